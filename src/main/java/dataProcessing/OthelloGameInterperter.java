@@ -1,13 +1,11 @@
 package dataProcessing;
 
+import othello.gamelogic.BitBoard;
 import othello.gamelogic.BoardSpace;
 import othello.gamelogic.HumanPlayer;
 import othello.gamelogic.OthelloGame;
 import othello.gamelogic.Player;
 
-import java.util.List;
-import java.util.Map;
-
 /** A class that's meant to take in a 60 byte array of what moves were made in a game and store a 8x8x60 array of
  * every board state in that game
 * */
@@ -73,27 +71,16 @@ public class OthelloGameInterperter {
 
             int[] moveCoordinates = byteToMove(curMove);
 
-            //map of available moves for current player and list of board spaces they flip
-            Map<BoardSpace, List<BoardSpace>> availableMoves = og.getAvailableMoves(curPlayer);
-
-            //boolean to see whether actual move exists
-            boolean moveExists = false;
-            //the move that is selected
-            BoardSpace selectedMove = null;
-            for (BoardSpace move : availableMoves.keySet()) {
-                //check if move was selected
-                if (move.getX() == moveCoordinates[0] && move.getY() == moveCoordinates[1]) {
-                    moveExists = true;
-                    selectedMove = move;
-                    break;
-                }
-            }
+            //mask of available moves for current player
+            long availableMoves = og.getBitBoard(curPlayer).getLegalMoves();
 
             //if actual move isn't valid, print error
-            if (!moveExists) {
+            if ((availableMoves & (1L << BitBoard.square(moveCoordinates[0], moveCoordinates[1]))) == 0) {
                 System.err.println("Move does not exist");
                 return;
             }
+            //the move that is selected
+            BoardSpace selectedMove = og.getBoard()[moveCoordinates[0]][moveCoordinates[1]];
 
             //fill out heatmap
             if (currentlyPlayerOne) {
@@ -103,10 +90,10 @@ public class OthelloGameInterperter {
             }
 
             //take spaces changing the board
-            og.takeSpaces(curPlayer, otherPlayer, availableMoves, selectedMove);
+            og.takeSpaces(curPlayer, otherPlayer, selectedMove);
 
             //check if otherPlayer has moves
-            if (!og.getAvailableMoves(otherPlayer).isEmpty()) {
+            if (og.getBitBoard(otherPlayer).getLegalMoves() != 0) {
                 //other player has moves
 
                 //change player
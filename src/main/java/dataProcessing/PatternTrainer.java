@@ -0,0 +1,214 @@
+package dataProcessing;
+
+import othello.gamelogic.BitBoard;
+import othello.gamelogic.PatternEvaluator;
+
+import java.io.*;
+
+/**
+ * Fits the weights of PatternEvaluator to the WTHOR games: every position of every game is a sample
+ * whose target is the final disc difference of that game. Each sample is used from both players' view,
+ * so the weights don't depend on color. Every phase is fitted separately by gradient descent,
+ * the step of each weight scaled by how often its pattern configuration occurs, and written
+ * to the resource PatternEvaluator loads by default.
+ */
+public class PatternTrainer {
+    private static final int GAME_BYTES = 61;
+    private static final int EPOCHS = 40;
+    // Share of the error each weight corrects per epoch, divided between all the features of a sample
+    private static final double LEARNING_RATE = 1.0;
+    // Added to the occurrence count of a weight, pulling rarely seen configurations towards zero
+    private static final double SMOOTHING = 4.0;
+    // Every this many games is kept out of the fit to measure the error on unseen positions
+    private static final int VALIDATION_EVERY = 20;
+    // Weights are stored in hundredths of a disc
+    private static final double SCALE = 100.0;
+    // Source copy of PatternEvaluator.DEFAULT_WEIGHTS_RESOURCE, packaged with the game by the build
+    private static final String WEIGHTS_FILE = "src/main/resources/othello/gamelogic/"
+            + PatternEvaluator.DEFAULT_WEIGHTS_RESOURCE;
+
+    public static void main(String[] args) throws IOException {
+        //file for combined binary of games
+        File gamesFile = new File("WHTHORCombined/combined_output.bin");
+        if (gamesFile.length() % GAME_BYTES != 0) {
+            System.err.println("file must contain a multiple of 61 bytes");
+            return;
+        }
+
+        Samples[] training = new Samples[PatternEvaluator.NUM_PHASES];
+        Samples[] validation = new Samples[PatternEvaluator.NUM_PHASES];
+        for (int phase = 0; phase < PatternEvaluator.NUM_PHASES; phase++) {
+            training[phase] = new Samples();
+            validation[phase] = new Samples();
+        }
+
+        int games = 0;
+        int skipped = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(gamesFile)))) {
+            byte[] gameBuffer = new byte[GAME_BYTES];
+            while (in.available() > 0) {
+                in.readFully(gameBuffer);
+                Samples[] target = games % VALIDATION_EVERY == 0 ? validation : training;
+                if (!replay(gameBuffer, target)) {
+                    skipped++;
+                }
+                games++;
+            }
+        }
+        System.out.println("Read " + games + " games, skipped " + skipped + " forfeited or invalid ones");
+
+        short[][] weights = new short[PatternEvaluator.NUM_PHASES][];
+        for (int phase = 0; phase < PatternEvaluator.NUM_PHASES; phase++) {
+            double[] fitted = fit(training[phase]);
+            System.out.printf("Phase %d: %d positions, training error %.2f, validation error %.2f discs%n",
+                    phase, training[phase].size, rmse(fitted, training[phase]), rmse(fitted, validation[phase]));
+            weights[phase] = new short[fitted.length];
+            for (int i = 0; i < fitted.length; i++) {
+                long scaled = Math.round(fitted[i] * SCALE);
+                weights[phase][i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, scaled));
+            }
+        }
+
+        File out = new File(WEIGHTS_FILE);
+        out.getParentFile().mkdirs();
+        PatternEvaluator.write(weights, out);
+        System.out.println("Wrote " + out);
+    }
+
+    /**
+     * Plays through one game, adding every position after a move to the samples of its phase.
+     * @return false if the game was forfeited or contains an illegal move, in which case nothing is added
+     */
+    private static boolean replay(byte[] game, Samples[] samples) {
+        int blackScore = game[0] & 0xFF;
+        if (blackScore > BitBoard.NUM_SQUARES) {
+            return false;
+        }
+        int target = 2 * blackScore - BitBoard.NUM_SQUARES;
+
+        BitBoard board = BitBoard.start();
+        long[] black = new long[game.length - 1];
+        long[] white = new long[game.length - 1];
+        int positions = 0;
+        for (int i = 1; i < game.length; i++) {
+            int move = game[i] & 0xFF;
+            //0 signifies a forfeit
+            if (move == 0) {
+                return false;
+            }
+            //wthor moves are 1 indexed 10 * row + column
+            int square = BitBoard.square(move % 10 - 1, move / 10 - 1);
+            if (board.getLegalMoves() == 0) {
+                board.pass();
+            }
+            if ((board.getLegalMoves() & (1L << square)) == 0) {
+                return false;
+            }
+            board.play(square);
+            black[positions] = board.getBlack();
+            white[positions] = board.getWhite();
+            positions++;
+        }
+        for (int i = 0; i < positions; i++) {
+            int empties = BitBoard.NUM_SQUARES - Long.bitCount(black[i] | white[i]);
+            samples[PatternEvaluator.phaseOf(empties)].add(black[i], white[i], target);
+        }
+        return true;
+    }
+
+    /**
+     * Fits the weights of one phase
+     */
+    private static double[] fit(Samples samples) {
+        int size = PatternEvaluator.getPhaseSize();
+        int featureCount = PatternEvaluator.getFeatureCount();
+        double[] weights = new double[size];
+        double[] gradient = new double[size];
+        int[] occurrences = new int[size];
+        int[] features = new int[featureCount];
+
+        for (int i = 0; i < samples.size; i++) {
+            for (int view = 0; view < 2; view++) {
+                PatternEvaluator.features(samples.player(i, view), samples.opponent(i, view), features);
+                for (int feature : features) {
+                    occurrences[feature]++;
+                }
+            }
+        }
+
+        double step = LEARNING_RATE / featureCount;
+        for (int epoch = 0; epoch < EPOCHS; epoch++) {
+            java.util.Arrays.fill(gradient, 0);
+            for (int i = 0; i < samples.size; i++) {
+                for (int view = 0; view < 2; view++) {
+                    PatternEvaluator.features(samples.player(i, view), samples.opponent(i, view), features);
+                    double error = samples.target(i, view);
+                    for (int feature : features) {
+                        error -= weights[feature];
+                    }
+                    for (int feature : features) {
+                        gradient[feature] += error;
+                    }
+                }
+            }
+            for (int j = 0; j < size; j++) {
+                if (occurrences[j] > 0) {
+                    weights[j] += step * gradient[j] / (occurrences[j] + SMOOTHING);
+                }
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * @return root mean square error of the weights on the samples, in discs
+     */
+    private static double rmse(double[] weights, Samples samples) {
+        int[] features = new int[PatternEvaluator.getFeatureCount()];
+        double sum = 0;
+        for (int i = 0; i < samples.size; i++) {
+            PatternEvaluator.features(samples.player(i, 0), samples.opponent(i, 0), features);
+            double error = samples.target(i, 0);
+            for (int feature : features) {
+                error -= weights[feature];
+            }
+            sum += error * error;
+        }
+        return samples.size == 0 ? 0 : Math.sqrt(sum / samples.size);
+    }
+
+    /**
+     * Growable arrays of positions and their final disc difference from black's view
+     */
+    private static class Samples {
+        private long[] black = new long[1024];
+        private long[] white = new long[1024];
+        private byte[] targets = new byte[1024];
+        private int size;
+
+        void add(long blackDiscs, long whiteDiscs, int target) {
+            if (size == black.length) {
+                black = java.util.Arrays.copyOf(black, size * 2);
+                white = java.util.Arrays.copyOf(white, size * 2);
+                targets = java.util.Arrays.copyOf(targets, size * 2);
+            }
+            black[size] = blackDiscs;
+            white[size] = whiteDiscs;
+            targets[size] = (byte) target;
+            size++;
+        }
+
+        // view 0 is black's, view 1 is white's
+        long player(int i, int view) {
+            return view == 0 ? black[i] : white[i];
+        }
+
+        long opponent(int i, int view) {
+            return view == 0 ? white[i] : black[i];
+        }
+
+        int target(int i, int view) {
+            return view == 0 ? targets[i] : -targets[i];
+        }
+    }
+}
@@ -0,0 +1,420 @@
+package othello.gamelogic;
+
+/**
+ * Compact representation of an Othello position used by the search engines.
+ * Each color is stored as a 64-bit occupancy mask, where bit (y * 8 + x) corresponds to board[x][y],
+ * together with the color of the player whose turn it is.
+ * Copying a BitBoard only copies two longs, unlike a BoardSpace[][] which holds 64 objects.
+ * The Zobrist key of the position is kept up to date as moves are played and undone.
+ */
+public class BitBoard {
+    public static final int BOARD_SIZE = 8;
+    public static final int NUM_SQUARES = BOARD_SIZE * BOARD_SIZE;
+    // Move value used when the side to move has no legal move and passes
+    public static final int PASS = -1;
+
+    // Every square except those with x == 0 or x == 7
+    private static final long INNER_FILES = 0x7E7E7E7E7E7E7E7EL;
+    // Every square except those with x == 0
+    private static final long NOT_A_FILE = 0xFEFEFEFEFEFEFEFEL;
+    // Every square except those with x == 7
+    private static final long NOT_H_FILE = 0x7F7F7F7F7F7F7F7FL;
+
+    private long black;
+    private long white;
+    private BoardSpace.SpaceType sideToMove;
+    private long key;
+
+    public BitBoard(long black, long white, BoardSpace.SpaceType sideToMove) {
+        if ((black & white) != 0) {
+            throw new IllegalArgumentException("A square cannot be owned by both colors");
+        }
+        if (sideToMove != BoardSpace.SpaceType.BLACK && sideToMove != BoardSpace.SpaceType.WHITE) {
+            throw new IllegalArgumentException("Side to move must be BLACK or WHITE");
+        }
+        this.black = black;
+        this.white = white;
+        this.sideToMove = sideToMove;
+        this.key = Zobrist.hash(black, white, sideToMove);
+    }
+
+    // Copy constructor
+    public BitBoard(BitBoard other) {
+        this.black = other.black;
+        this.white = other.white;
+        this.sideToMove = other.sideToMove;
+        this.key = other.key;
+    }
+
+    /**
+     * @return the starting position of a game: four discs in the centre, black to move
+     */
+    public static BitBoard start() {
+        return new BitBoard((1L << square(4, 3)) | (1L << square(3, 4)),
+                (1L << square(3, 3)) | (1L << square(4, 4)), BoardSpace.SpaceType.BLACK);
+    }
+
+    /**
+     * Builds a BitBoard from a BoardSpace[][] board.
+     * @param board the board to convert, indexed [x][y]
+     * @param sideToMove the color of the player whose turn it is
+     * @return a new BitBoard with the same discs as board
+     */
+    public static BitBoard fromBoard(BoardSpace[][] board, BoardSpace.SpaceType sideToMove) {
+        if (board.length != BOARD_SIZE) {
+            throw new IllegalArgumentException("Board must be " + BOARD_SIZE + "x" + BOARD_SIZE);
+        }
+        long black = 0;
+        long white = 0;
+        for (int x = 0; x < BOARD_SIZE; x++) {
+            if (board[x].length != BOARD_SIZE) {
+                throw new IllegalArgumentException("Board must be " + BOARD_SIZE + "x" + BOARD_SIZE);
+            }
+            for (int y = 0; y < BOARD_SIZE; y++) {
+                BoardSpace.SpaceType type = board[x][y].getType();
+                if (type == BoardSpace.SpaceType.BLACK) {
+                    black |= 1L << square(x, y);
+                } else if (type == BoardSpace.SpaceType.WHITE) {
+                    white |= 1L << square(x, y);
+                }
+            }
+        }
+        return new BitBoard(black, white, sideToMove);
+    }
+
+    /**
+     * @return a newly allocated BoardSpace[][] board, indexed [x][y], with the same discs as this BitBoard
+     */
+    public BoardSpace[][] toBoard() {
+        BoardSpace[][] board = new BoardSpace[BOARD_SIZE][BOARD_SIZE];
+        for (int x = 0; x < BOARD_SIZE; x++) {
+            for (int y = 0; y < BOARD_SIZE; y++) {
+                board[x][y] = new BoardSpace(x, y, getType(x, y));
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Overwrites the types of an existing board with the discs of this BitBoard.
+     * Keeps the BoardSpace objects themselves, so references held by players and the GUI stay valid.
+     * @param board the board to update, indexed [x][y]
+     */
+    public void writeTo(BoardSpace[][] board) {
+        for (int x = 0; x < BOARD_SIZE; x++) {
+            for (int y = 0; y < BOARD_SIZE; y++) {
+                board[x][y].setType(getType(x, y));
+            }
+        }
+    }
+
+    /**
+     * Copies the state of another BitBoard into this one without allocating.
+     * @param other the BitBoard to copy from
+     */
+    public void copyFrom(BitBoard other) {
+        this.black = other.black;
+        this.white = other.white;
+        this.sideToMove = other.sideToMove;
+        this.key = other.key;
+    }
+
+    /**
+     * @return the occupancy mask of the black discs
+     */
+    public long getBlack() {
+        return black;
+    }
+
+    /**
+     * @return the occupancy mask of the white discs
+     */
+    public long getWhite() {
+        return white;
+    }
+
+    /**
+     * @return the Zobrist key of this position, equal for equal positions
+     */
+    public long getKey() {
+        return key;
+    }
+
+    /**
+     * @return the color of the player whose turn it is
+     */
+    public BoardSpace.SpaceType getSideToMove() {
+        return sideToMove;
+    }
+
+    /**
+     * @return the occupancy mask of the player whose turn it is
+     */
+    public long getPlayer() {
+        return sideToMove == BoardSpace.SpaceType.BLACK ? black : white;
+    }
+
+    /**
+     * @return the occupancy mask of the player waiting for their turn
+     */
+    public long getOpponent() {
+        return sideToMove == BoardSpace.SpaceType.BLACK ? white : black;
+    }
+
+    /**
+     * @return the mask of all empty squares
+     */
+    public long getEmpty() {
+        return ~(black | white);
+    }
+
+    /**
+     * @param color BLACK or WHITE
+     * @return the occupancy mask of the given color
+     */
+    public long getDiscs(BoardSpace.SpaceType color) {
+        if (color == BoardSpace.SpaceType.BLACK) {
+            return black;
+        }
+        if (color == BoardSpace.SpaceType.WHITE) {
+            return white;
+        }
+        return getEmpty();
+    }
+
+    /**
+     * @param color BLACK or WHITE
+     * @return the number of discs of the given color
+     */
+    public int countDiscs(BoardSpace.SpaceType color) {
+        return Long.bitCount(getDiscs(color));
+    }
+
+    /**
+     * @return the number of empty squares
+     */
+    public int countEmpty() {
+        return Long.bitCount(getEmpty());
+    }
+
+    /**
+     * @return the type of the space at (x, y)
+     */
+    public BoardSpace.SpaceType getType(int x, int y) {
+        long bit = 1L << square(x, y);
+        if ((black & bit) != 0) {
+            return BoardSpace.SpaceType.BLACK;
+        }
+        if ((white & bit) != 0) {
+            return BoardSpace.SpaceType.WHITE;
+        }
+        return BoardSpace.SpaceType.EMPTY;
+    }
+
+    /**
+     * @return the mask of legal moves for the player whose turn it is
+     */
+    public long getLegalMoves() {
+        return legalMoves(getPlayer(), getOpponent());
+    }
+
+    /**
+     * Computes every legal move for a player in all 8 directions at once.
+     * For each direction, the player's discs are shifted across runs of opponent discs using a
+     * parallel prefix (doubling the shift each step), so a run of up to 6 discs takes 3 steps.
+     * Opponent discs on the A and H files are masked out for directions that move horizontally
+     * so that shifts cannot wrap around to the next row.
+     * @param player occupancy mask of the player to move
+     * @param opponent occupancy mask of the opponent
+     * @return a mask of the empty squares that are legal moves for player
+     */
+    public static long legalMoves(long player, long opponent) {
+        long empty = ~(player | opponent);
+        long inner = opponent & INNER_FILES;
+        long moves = shiftMoves(player, inner, 1)
+                | shiftMoves(player, opponent, 8)
+                | shiftMoves(player, inner, 7)
+                | shiftMoves(player, inner, 9);
+        return moves & empty;
+    }
+
+    /**
+     * Helper for legalMoves. Finds squares reachable from player across at least one disc of mask,
+     * in both the positive and negative direction of the given shift.
+     */
+    private static long shiftMoves(long player, long mask, int dir) {
+        long flipLeft = mask & (player << dir);
+        long flipRight = mask & (player >>> dir);
+        flipLeft |= mask & (flipLeft << dir);
+        flipRight |= mask & (flipRight >>> dir);
+        long maskLeft = mask & (mask << dir);
+        long maskRight = mask & (mask >>> dir);
+        int dir2 = dir + dir;
+        flipLeft |= maskLeft & (flipLeft << dir2);
+        flipRight |= maskRight & (flipRight >>> dir2);
+        flipLeft |= maskLeft & (flipLeft << dir2);
+        flipRight |= maskRight & (flipRight >>> dir2);
+        return (flipLeft << dir) | (flipRight >>> dir);
+    }
+
+    /**
+     * Computes the discs flipped by a move directly from the occupancy masks.
+     * Walks each of the 8 directions from the destination, so no list of origins is needed.
+     * @param player occupancy mask of the player making the move
+     * @param opponent occupancy mask of the opponent
+     * @param square bit index of the destination
+     * @return a mask of the opponent discs that would be flipped, 0 if the move is not legal
+     */
+    public static long flips(long player, long opponent, int square) {
+        long move = 1L << square;
+        return flipsInDirection(move, player, opponent, 1, NOT_A_FILE)
+                | flipsInDirection(move, player, opponent, -1, NOT_H_FILE)
+                | flipsInDirection(move, player, opponent, 8, -1L)
+                | flipsInDirection(move, player, opponent, -8, -1L)
+                | flipsInDirection(move, player, opponent, 9, NOT_A_FILE)
+                | flipsInDirection(move, player, opponent, -9, NOT_H_FILE)
+                | flipsInDirection(move, player, opponent, 7, NOT_H_FILE)
+                | flipsInDirection(move, player, opponent, -7, NOT_A_FILE);
+    }
+
+    /**
+     * Helper for flips. Collects the run of opponent discs next to move in one direction,
+     * and keeps it only if the run is closed by one of the player's discs.
+     * @param shift bit shift of one step, positive for a left shift and negative for a right shift
+     * @param wrapMask squares a step may land on without having wrapped around a row
+     */
+    private static long flipsInDirection(long move, long player, long opponent, int shift, long wrapMask) {
+        long flipped = 0;
+        long cur = shift(move, shift) & wrapMask;
+        while ((cur & opponent) != 0) {
+            flipped |= cur;
+            cur = shift(cur, shift) & wrapMask;
+        }
+        return (cur & player) != 0 ? flipped : 0;
+    }
+
+    private static long shift(long bits, int shift) {
+        return shift > 0 ? bits << shift : bits >>> -shift;
+    }
+
+    /**
+     * Spreads a mask one step in all 8 directions: first sideways, then up and down,
+     * so the diagonals come from the sideways step. Squares of the mask itself are only
+     * included if they are next to another square of the mask.
+     * @return a mask of every square adjacent to a square of mask
+     */
+    public static long neighbours(long mask) {
+        long sideways = ((mask << 1) & NOT_A_FILE) | ((mask >>> 1) & NOT_H_FILE);
+        long row = mask | sideways;
+        return sideways | (row << 8) | (row >>> 8);
+    }
+
+    /**
+     * Places a disc for the side to move, flips the captured discs and passes the turn.
+     * @param square bit index of the destination, must be a legal move
+     * @return the mask of flipped discs
+     */
+    public long play(int square) {
+        long move = 1L << square;
+        if (((black | white) & move) != 0) {
+            throw new IllegalArgumentException("Square " + square + " is already occupied");
+        }
+        long flipped = flips(getPlayer(), getOpponent(), square);
+        if (flipped == 0) {
+            throw new IllegalArgumentException("Square " + square + " is not a legal move");
+        }
+        if (sideToMove == BoardSpace.SpaceType.BLACK) {
+            black |= move | flipped;
+            white &= ~flipped;
+        } else {
+            white |= move | flipped;
+            black &= ~flipped;
+        }
+        key ^= Zobrist.place(sideToMove, square) ^ Zobrist.flip(flipped) ^ Zobrist.side();
+        sideToMove = opposite(sideToMove);
+        return flipped;
+    }
+
+    /**
+     * Takes back a move made with play, restoring the position from the flipped-disc mask it returned.
+     * @param square bit index of the destination of the move
+     * @param flipped the mask returned by play
+     */
+    public void undo(int square, long flipped) {
+        sideToMove = opposite(sideToMove);
+        long move = 1L << square;
+        if (sideToMove == BoardSpace.SpaceType.BLACK) {
+            black &= ~(move | flipped);
+            white |= flipped;
+        } else {
+            white &= ~(move | flipped);
+            black |= flipped;
+        }
+        key ^= Zobrist.place(sideToMove, square) ^ Zobrist.flip(flipped) ^ Zobrist.side();
+    }
+
+    /**
+     * Passes the turn to the other player without placing a disc.
+     */
+    public void pass() {
+        sideToMove = opposite(sideToMove);
+        key ^= Zobrist.side();
+    }
+
+    /**
+     * Finds the n-th lowest set bit of a mask, used to pick a move by index from a move mask.
+     * @param mask the mask to search, must have more than n bits set
+     * @param n zero-based index of the set bit
+     * @return the bit index of the n-th set bit
+     */
+    public static int nthSquare(long mask, int n) {
+        for (int i = 0; i < n; i++) {
+            mask &= mask - 1;
+        }
+        return Long.numberOfTrailingZeros(mask);
+    }
+
+    /**
+     * @return the bit index of the space at (x, y)
+     */
+    public static int square(int x, int y) {
+        return y * BOARD_SIZE + x;
+    }
+
+    /**
+     * @return the x coordinate of a bit index
+     */
+    public static int getX(int square) {
+        return square & (BOARD_SIZE - 1);
+    }
+
+    /**
+     * @return the y coordinate of a bit index
+     */
+    public static int getY(int square) {
+        return square >>> 3;
+    }
+
+    /**
+     * @return WHITE for BLACK and BLACK for WHITE
+     */
+    public static BoardSpace.SpaceType opposite(BoardSpace.SpaceType color) {
+        return color == BoardSpace.SpaceType.BLACK ? BoardSpace.SpaceType.WHITE : BoardSpace.SpaceType.BLACK;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof BitBoard other)) {
+            return false;
+        }
+        return black == other.black && white == other.white && sideToMove == other.sideToMove;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(key);
+    }
+}
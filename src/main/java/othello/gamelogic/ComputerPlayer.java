@@ -13,6 +13,14 @@ public class ComputerPlayer extends Player{
         // This input should match the ones specified in App.java!
         if (strategyName.equalsIgnoreCase("minimax")) {
             this.strategy = new Minimax();
+        } else if (strategyName.equalsIgnoreCase("pattern")) {
+            Minimax minimax = new Minimax();
+            minimax.setEvaluator(new PatternEvaluator());
+            this.strategy = minimax;
+        } else if (strategyName.equalsIgnoreCase("features")) {
+            Minimax minimax = new Minimax();
+            minimax.setEvaluator(new FeatureEvaluator());
+            this.strategy = minimax;
         } else if (strategyName.equalsIgnoreCase("mcts")) {
             this.strategy = new MCTS();
         } else if (strategyName.equalsIgnoreCase("custom")) {
@@ -0,0 +1,322 @@
+package othello.gamelogic;
+
+/**
+ * Solves endgame positions by searching every line to the end of the game.
+ * Scores are final disc differences from the view of the player to move, with the empty squares
+ * of a finished game counted for the winner. The search is negamax with alpha-beta pruning directly
+ * on the two disc masks, so it never allocates.
+ * Moves are ordered fastest-first (fewest replies for the opponent) far from the end,
+ * and by parity (squares in regions with an odd number of empties first) close to it.
+ * The last four empties are searched without generating move masks, the very last one by counting flips.
+ */
+public class EndgameSolver {
+    /**
+     * What the solver has to find out about a position.
+     */
+    public enum Mode {
+        // The exact final disc difference
+        EXACT,
+        // Only whether the game is won, lost or drawn, which needs a much smaller tree
+        WIN_LOSS_DRAW
+    }
+
+    private static final int MAX_SCORE = BitBoard.NUM_SQUARES;
+    // How many nodes are searched between checks of the clock
+    private static final int CLOCK_CHECK_INTERVAL = 4096;
+    // Above this many empties moves are sorted fastest-first, at or below only by parity
+    private static final int FASTEST_FIRST_EMPTIES = 7;
+    // At or below this many empties the squares are tried directly instead of generating the move mask
+    private static final int FEW_EMPTIES = 4;
+    // More than the most legal moves an Othello position can have
+    private static final int MAX_MOVES = 64;
+
+    // Quadrant of every square and the squares of every quadrant, for the parity ordering
+    private static final int[] QUADRANT = new int[BitBoard.NUM_SQUARES];
+    private static final long[] QUADRANT_MASK = new long[4];
+
+    static {
+        for (int square = 0; square < BitBoard.NUM_SQUARES; square++) {
+            int quadrant = (BitBoard.getY(square) >= 4 ? 2 : 0) | (BitBoard.getX(square) >= 4 ? 1 : 0);
+            QUADRANT[square] = quadrant;
+            QUADRANT_MASK[quadrant] |= 1L << square;
+        }
+    }
+
+    // Move buffers indexed by the number of empties, which drops by one with every move
+    private final int[][] moves = new int[BitBoard.NUM_SQUARES + 1][MAX_MOVES];
+    private final int[][] keys = new int[BitBoard.NUM_SQUARES + 1][MAX_MOVES];
+
+    private long nodes;
+    private long nodeLimit;
+    private long deadline;
+    // Node count at which search next looks at the clock. searchFew and lastEmpty count nodes too,
+    // so the count rarely lands on an exact multiple of the interval
+    private long nextClockCheck;
+    private boolean aborted;
+    private int score;
+
+    /**
+     * Finds the best move of a position.
+     * @param position the position to solve, with at least one legal move
+     * @param mode whether to find the exact score or only the game result
+     * @param deadline System.nanoTime() value at which to give up
+     * @param nodeLimit number of positions after which to give up, 0 for no limit
+     * @return the best move as a bit index, only meaningful if isAborted() is false
+     */
+    public int solve(BitBoard position, Mode mode, long deadline, long nodeLimit) {
+        this.deadline = deadline;
+        this.nodeLimit = nodeLimit;
+        nodes = 0;
+        nextClockCheck = 0;
+        aborted = false;
+
+        long player = position.getPlayer();
+        long opponent = position.getOpponent();
+        long empty = ~(player | opponent);
+        int empties = Long.bitCount(empty);
+        int parity = parityOf(empty);
+        int alpha = mode == Mode.EXACT ? -MAX_SCORE : -1;
+        int beta = mode == Mode.EXACT ? MAX_SCORE : 1;
+
+        int count = sortMoves(player, opponent, BitBoard.legalMoves(player, opponent), parity, empties);
+        int[] list = moves[empties];
+        int bestMove = BitBoard.PASS;
+        int bestScore = -MAX_SCORE - 1;
+        for (int i = 0; i < count; i++) {
+            int square = list[i];
+            long flipped = BitBoard.flips(player, opponent, square);
+            int value = -searchChild(opponent & ~flipped, player | flipped | (1L << square), -beta, -alpha,
+                    parity ^ (1 << QUADRANT[square]), empties - 1);
+            if (aborted) {
+                return bestMove;
+            }
+            if (value > bestScore) {
+                bestScore = value;
+                bestMove = square;
+                if (value > alpha) {
+                    alpha = value;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        score = bestScore;
+        return bestMove;
+    }
+
+    /**
+     * @return the score of the move found by the last solve call, in WIN_LOSS_DRAW mode only its sign is exact
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * @return the number of positions visited by the last solve call
+     */
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    /**
+     * @return true if the last solve call ran out of time or nodes before finishing
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    private int searchChild(long player, long opponent, int alpha, int beta, int parity, int empties) {
+        if (empties == 1) {
+            return lastEmpty(player, opponent, Long.numberOfTrailingZeros(~(player | opponent)));
+        }
+        if (empties <= FEW_EMPTIES) {
+            return searchFew(player, opponent, alpha, beta, parity, empties);
+        }
+        return search(player, opponent, alpha, beta, parity, empties);
+    }
+
+    /**
+     * Searches a position with more than FEW_EMPTIES empties, generating and sorting its moves.
+     */
+    private int search(long player, long opponent, int alpha, int beta, int parity, int empties) {
+        nodes++;
+        if (nodeLimit > 0 && nodes >= nodeLimit) {
+            aborted = true;
+        }
+        if (nodes >= nextClockCheck) {
+            nextClockCheck = nodes + CLOCK_CHECK_INTERVAL;
+            if (System.nanoTime() >= deadline) {
+                aborted = true;
+            }
+        }
+        if (aborted) {
+            return 0;
+        }
+
+        long legal = BitBoard.legalMoves(player, opponent);
+        if (legal == 0) {
+            if (BitBoard.legalMoves(opponent, player) == 0) {
+                return finalScore(player, opponent, empties);
+            }
+            return -search(opponent, player, -beta, -alpha, parity, empties);
+        }
+
+        int count = sortMoves(player, opponent, legal, parity, empties);
+        int[] list = moves[empties];
+        int bestScore = -MAX_SCORE - 1;
+        for (int i = 0; i < count; i++) {
+            int square = list[i];
+            long flipped = BitBoard.flips(player, opponent, square);
+            int value = -searchChild(opponent & ~flipped, player | flipped | (1L << square), -beta, -alpha,
+                    parity ^ (1 << QUADRANT[square]), empties - 1);
+            if (aborted) {
+                return 0;
+            }
+            if (value > bestScore) {
+                bestScore = value;
+                if (value > alpha) {
+                    alpha = value;
+                    if (alpha >= beta) {
+                        break;
+                    }
+                }
+            }
+        }
+        return bestScore;
+    }
+
+    /**
+     * Searches a position with 2 to FEW_EMPTIES empties. Every empty square is tried as a move,
+     * those in quadrants with an odd number of empties first, which is cheaper than generating the move mask.
+     */
+    private int searchFew(long player, long opponent, int alpha, int beta, int parity, int empties) {
+        nodes++;
+        long empty = ~(player | opponent);
+        long odd = parityMask(parity);
+        int bestScore = -MAX_SCORE - 1;
+        boolean moved = false;
+
+        for (int pass = 0; pass < 2; pass++) {
+            long squares = pass == 0 ? empty & odd : empty & ~odd;
+            while (squares != 0) {
+                int square = Long.numberOfTrailingZeros(squares);
+                squares &= squares - 1;
+                long flipped = BitBoard.flips(player, opponent, square);
+                if (flipped == 0) {
+                    continue;
+                }
+                moved = true;
+                int value = -searchChild(opponent & ~flipped, player | flipped | (1L << square), -beta, -alpha,
+                        parity ^ (1 << QUADRANT[square]), empties - 1);
+                if (value > bestScore) {
+                    bestScore = value;
+                    if (value > alpha) {
+                        alpha = value;
+                        if (alpha >= beta) {
+                            return bestScore;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (!moved) {
+            if (BitBoard.legalMoves(opponent, player) == 0) {
+                return finalScore(player, opponent, empties);
+            }
+            return -searchFew(opponent, player, -beta, -alpha, parity, empties);
+        }
+        return bestScore;
+    }
+
+    /**
+     * Scores a position with a single empty square, which either player may fill.
+     */
+    private int lastEmpty(long player, long opponent, int square) {
+        nodes++;
+        long flipped = BitBoard.flips(player, opponent, square);
+        if (flipped != 0) {
+            int playerDiscs = Long.bitCount(player) + Long.bitCount(flipped) + 1;
+            return 2 * playerDiscs - BitBoard.NUM_SQUARES;
+        }
+        flipped = BitBoard.flips(opponent, player, square);
+        if (flipped != 0) {
+            int opponentDiscs = Long.bitCount(opponent) + Long.bitCount(flipped) + 1;
+            return BitBoard.NUM_SQUARES - 2 * opponentDiscs;
+        }
+        return finalScore(player, opponent, 1);
+    }
+
+    /**
+     * Sorts the legal moves of a position into the move buffer for its number of empties.
+     * @return the number of moves
+     */
+    private int sortMoves(long player, long opponent, long legal, int parity, int empties) {
+        int[] list = moves[empties];
+        int[] listKeys = keys[empties];
+        long odd = parityMask(parity);
+        boolean fastestFirst = empties > FASTEST_FIRST_EMPTIES;
+
+        int count = 0;
+        while (legal != 0) {
+            int square = Long.numberOfTrailingZeros(legal);
+            legal &= legal - 1;
+
+            // lower keys first, a move in an odd region wins ties
+            int key = (odd & (1L << square)) != 0 ? 0 : 1;
+            if (fastestFirst) {
+                long flipped = BitBoard.flips(player, opponent, square);
+                long replies = BitBoard.legalMoves(opponent & ~flipped, player | flipped | (1L << square));
+                key += Long.bitCount(replies) << 1;
+            }
+
+            int i = count++;
+            while (i > 0 && listKeys[i - 1] > key) {
+                list[i] = list[i - 1];
+                listKeys[i] = listKeys[i - 1];
+                i--;
+            }
+            list[i] = square;
+            listKeys[i] = key;
+        }
+        return count;
+    }
+
+    /**
+     * @return one bit per quadrant, set if the quadrant has an odd number of empty squares
+     */
+    private static int parityOf(long empty) {
+        int parity = 0;
+        for (int quadrant = 0; quadrant < 4; quadrant++) {
+            parity |= (Long.bitCount(empty & QUADRANT_MASK[quadrant]) & 1) << quadrant;
+        }
+        return parity;
+    }
+
+    /**
+     * @return the squares of every quadrant with an odd number of empties
+     */
+    private static long parityMask(int parity) {
+        long mask = 0;
+        for (int quadrant = 0; quadrant < 4; quadrant++) {
+            if ((parity & (1 << quadrant)) != 0) {
+                mask |= QUADRANT_MASK[quadrant];
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @return the disc difference of a finished game, the empty squares going to the winner
+     */
+    private static int finalScore(long player, long opponent, int empties) {
+        int difference = Long.bitCount(player) - Long.bitCount(opponent);
+        if (difference > 0) {
+            return difference + empties;
+        } else if (difference < 0) {
+            return difference - empties;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,15 @@
+package othello.gamelogic;
+
+/**
+ * Scores positions for Minimax, replacing its default Constants.BOARD_WEIGHTS evaluation.
+ * Implementations work directly on the disc masks and are called at every leaf, so they must not allocate.
+ * They may be called from several search threads at once.
+ */
+public interface Evaluator {
+    /**
+     * @param player discs of the player the score is for
+     * @param opponent discs of the other player
+     * @return how good the position is for player, higher is better
+     */
+    int evaluate(long player, long opponent);
+}
@@ -0,0 +1,182 @@
+package othello.gamelogic;
+
+/**
+ * Evaluates positions by a weighted sum of the standard Othello features, each the difference
+ * between the two players and computed on the disc masks with shifts and Long.bitCount.
+ * The weights can be changed per feature, a weight of 0 skips the feature entirely.
+ */
+public class FeatureEvaluator implements Evaluator {
+    // Squares on the edges of the board, a disc there has no neighbour on one side of some lines
+    private static final long FILE_EDGES = 0x8181818181818181L;
+    private static final long RANK_EDGES = 0xFF000000000000FFL;
+    private static final long EDGES = FILE_EDGES | RANK_EDGES;
+    // Every diagonal (x - y constant) and anti-diagonal (x + y constant) of the board
+    private static final long[] DIAGONALS = new long[2 * BitBoard.BOARD_SIZE - 1];
+    private static final long[] ANTI_DIAGONALS = new long[2 * BitBoard.BOARD_SIZE - 1];
+
+    static {
+        for (int square = 0; square < BitBoard.NUM_SQUARES; square++) {
+            int x = BitBoard.getX(square);
+            int y = BitBoard.getY(square);
+            DIAGONALS[x - y + BitBoard.BOARD_SIZE - 1] |= 1L << square;
+            ANTI_DIAGONALS[x + y] |= 1L << square;
+        }
+    }
+
+    public enum Feature {
+        // Constants.BOARD_WEIGHTS of the player's discs minus the opponent's
+        SQUARES(1) {
+            @Override
+            public int value(long player, long opponent) {
+                return Minimax.sumWeights(player) - Minimax.sumWeights(opponent);
+            }
+        },
+        // Number of legal moves
+        MOBILITY(20) {
+            @Override
+            public int value(long player, long opponent) {
+                return Long.bitCount(BitBoard.legalMoves(player, opponent))
+                        - Long.bitCount(BitBoard.legalMoves(opponent, player));
+            }
+        },
+        // Empty squares next to the other player's discs, where moves may become legal later
+        POTENTIAL_MOBILITY(5) {
+            @Override
+            public int value(long player, long opponent) {
+                long empty = ~(player | opponent);
+                return Long.bitCount(empty & BitBoard.neighbours(opponent))
+                        - Long.bitCount(empty & BitBoard.neighbours(player));
+            }
+        },
+        // Discs next to an empty square, which give the other player moves
+        FRONTIER(-5) {
+            @Override
+            public int value(long player, long opponent) {
+                long nextToEmpty = BitBoard.neighbours(~(player | opponent));
+                return Long.bitCount(player & nextToEmpty) - Long.bitCount(opponent & nextToEmpty);
+            }
+        },
+        // Discs that can never be flipped, see stableDiscs
+        STABILITY(50) {
+            @Override
+            public int value(long player, long opponent) {
+                return Long.bitCount(stableDiscs(player, opponent)) - Long.bitCount(stableDiscs(opponent, player));
+            }
+        };
+
+        private final int defaultWeight;
+
+        Feature(int defaultWeight) {
+            this.defaultWeight = defaultWeight;
+        }
+
+        /**
+         * @return the feature for player minus the same feature for opponent
+         */
+        public abstract int value(long player, long opponent);
+
+        public int getDefaultWeight() {
+            return defaultWeight;
+        }
+    }
+
+    private static final Feature[] FEATURES = Feature.values();
+
+    // Weight of each feature, by ordinal
+    private final int[] weights = new int[FEATURES.length];
+
+    /**
+     * Creates an evaluator with the default weight of every feature
+     */
+    public FeatureEvaluator() {
+        for (Feature feature : FEATURES) {
+            weights[feature.ordinal()] = feature.getDefaultWeight();
+        }
+    }
+
+    /**
+     * Changes the weight of one feature. Must not be called while a search is using this evaluator.
+     * @param weight multiplier of the feature's value, 0 to leave it out
+     */
+    public void setWeight(Feature feature, int weight) {
+        weights[feature.ordinal()] = weight;
+    }
+
+    public int getWeight(Feature feature) {
+        return weights[feature.ordinal()];
+    }
+
+    @Override
+    public int evaluate(long player, long opponent) {
+        int score = 0;
+        for (Feature feature : FEATURES) {
+            int weight = weights[feature.ordinal()];
+            if (weight != 0) {
+                score += weight * feature.value(player, opponent);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Finds discs of player that can never be flipped, growing them from the edges of the board.
+     * A disc can't be flipped along one of its 4 lines if that line is full, or if one of its two
+     * neighbours on the line is off the board or a stable disc of the same player. Discs for which
+     * this holds on all 4 lines are stable, which may in turn make their neighbours stable.
+     * This misses some stable discs, but never counts a disc that can still be flipped.
+     * @return a mask of the stable discs of player
+     */
+    public static long stableDiscs(long player, long opponent) {
+        long filled = player | opponent;
+        // squares that can't be flipped along each line because of the board edge or a full line
+        long horizontal = FILE_EDGES | fullRows(filled);
+        long vertical = RANK_EDGES | fullColumns(filled);
+        long diagonal = EDGES | fullLines(filled, DIAGONALS);
+        long antiDiagonal = EDGES | fullLines(filled, ANTI_DIAGONALS);
+
+        long stable = 0;
+        long previous;
+        do {
+            previous = stable;
+            // edge squares are already in the masks, so shifts that wrap around a row don't matter
+            stable |= player
+                    & (horizontal | (stable << 1) | (stable >>> 1))
+                    & (vertical | (stable << 8) | (stable >>> 8))
+                    & (diagonal | (stable << 9) | (stable >>> 9))
+                    & (antiDiagonal | (stable << 7) | (stable >>> 7));
+        } while (stable != previous);
+        return stable;
+    }
+
+    /**
+     * @return the squares of every row without an empty square
+     */
+    private static long fullRows(long filled) {
+        // fold each row onto its first square
+        long row = filled & (filled >>> 4);
+        row &= row >>> 2;
+        row &= row >>> 1;
+        return (row & 0x0101010101010101L) * 0xFF;
+    }
+
+    /**
+     * @return the squares of every column without an empty square
+     */
+    private static long fullColumns(long filled) {
+        // fold the columns onto the first row
+        long column = filled & (filled >>> 32);
+        column &= column >>> 16;
+        column &= column >>> 8;
+        return (column & 0xFF) * 0x0101010101010101L;
+    }
+
+    private static long fullLines(long filled, long[] lines) {
+        long full = 0;
+        for (long line : lines) {
+            if ((filled & line) == line) {
+                full |= line;
+            }
+        }
+        return full;
+    }
+}
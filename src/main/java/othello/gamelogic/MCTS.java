@@ -2,47 +2,275 @@ package othello.gamelogic;
 
 import othello.Constants;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class MCTS implements Strategy {
     private static final int NUM_ITERATIONS = 1000;
+    // Room for 2^18 nodes, about 23MB
+    public static final int DEFAULT_NODE_CAPACITY = 1 << 18;
+    // Number of playouts between checks of the clock and of whether the move is already decided
+    private static final int CHECK_INTERVAL = 64;
+    public static final double DEFAULT_RAVE_EQUIVALENCE = 1000;
+    // Most entries on a path from a root, every move below it fills an empty square
+    private static final int MAX_PATH = BitBoard.NUM_SQUARES + 1;
     private Player computerPlayer;
-    private Player opponent;
 
+    /**
+     * How the threads share the iterations when there is more than one
+     */
+    public enum Parallelism {
+        // All threads grow one shared tree, spread out by virtual loss
+        TREE,
+        // Every thread grows its own tree, and the visits of the root moves are added up at the end
+        ROOT,
+        // One tree grown on the calling thread, every new node is played out once per thread at the same time
+        LEAF
+    }
+
+    // Number of threads running iterations, 1 searches on the calling thread
+    private int threads = 1;
+    private Parallelism parallelism = Parallelism.TREE;
+    private ForkJoinPool pool;
+    // Playouts claimed so far by the threads of the current makeMove call
+    private final AtomicInteger startedIterations = new AtomicInteger();
+
+    // Budgets of one makeMove call, the search stops at whichever is reached first. 0 for no limit
+    private int iterations = NUM_ITERATIONS;
+    private long timeLimitMillis = 0;
+    private long nodeLimit = 0;
+    // Stop as soon as the most visited move can't be overtaken within the remaining budget
+    private boolean earlyStop = true;
+    private long startTime;
+    private long deadline;
+    // Nodes added to the trees by the current makeMove call
+    private final AtomicLong createdNodes = new AtomicLong();
+    // Set once a budget runs out or the move is decided, stops every thread
+    private volatile boolean stopped;
+    // Roots searched by the current makeMove call
+    private int[] searchRoots;
+
+    // Blend the all-moves-as-first (AMAF) statistics of each child into its UCT value, off by default
+    private boolean rave = false;
+    // Visits at which a child's own statistics and its AMAF statistics weigh the same, see raveWeight
+    private double raveEquivalence = DEFAULT_RAVE_EQUIVALENCE;
+
+    // Holds the nodes of every tree, kept between makeMove calls
+    private final MCTSTree tree;
+    // Roots of the last makeMove call, their trees are searched for the new position by the next one
+    private boolean reuseTree = true;
+    private int[] previousRoots = new int[0];
+    private BoardSpace.SpaceType previousColor;
+
+    public MCTS() {
+        this(DEFAULT_NODE_CAPACITY);
+    }
+
+    /**
+     * @param nodeCapacity maximum number of nodes in the tree. Once it is full, playouts start from
+     *                     the nodes reached without adding new ones
+     */
+    public MCTS(int nodeCapacity) {
+        tree = new MCTSTree(nodeCapacity);
+    }
+
+    /**
+     * Sets how many threads run iterations at once, see Parallelism for how they share the work.
+     * With a shared tree, a thread's visit counts as a loss until its playout finishes (virtual loss),
+     * so that the other threads are steered towards different paths.
+     * @param threads number of search threads, at least 1
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed");
+        }
+        if (threads != this.threads) {
+            shutdown();
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Stops the search threads. They are only started by a parallel search, and a later one starts them again.
+     */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /**
+     * @param parallelism how the threads share the work when there is more than one
+     */
+    public void setParallelism(Parallelism parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @param iterations number of playouts per move, 0 for no limit. Defaults to 1000
+     */
+    public void setIterations(int iterations) {
+        if (iterations < 0) {
+            throw new IllegalArgumentException("The number of iterations can't be negative");
+        }
+        this.iterations = iterations;
+    }
+
+    /**
+     * @param timeLimitMillis time each move may take, 0 for no limit, which is the default
+     */
+    public void setTimeLimitMillis(long timeLimitMillis) {
+        this.timeLimitMillis = timeLimitMillis;
+    }
+
+    /**
+     * @param nodeLimit number of nodes each move may add to the tree, 0 for no limit, which is the default
+     */
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * @param earlyStop whether to stop once the most visited move can no longer be overtaken
+     *                  by the second within the remaining budget, on by default
+     */
+    public void setEarlyStop(boolean earlyStop) {
+        this.earlyStop = earlyStop;
+    }
+
+    /**
+     * Turns RAVE on or off. With RAVE, every playout also counts for the children of each node on its path
+     * whose move was played later in the playout by the side to move at that node, whichever order
+     * the moves came in. These all-moves-as-first statistics gather far more samples than the child's own,
+     * and are blended into its value with a weight that fades as the child's own visits grow.
+     * @param rave whether to use RAVE, off by default
+     */
+    public void setRave(boolean rave) {
+        this.rave = rave;
+    }
+
+    /**
+     * @param raveEquivalence visits of a child at which its own value and its AMAF value get equal weight,
+     *                        a larger value trusts the AMAF statistics for longer. Defaults to 1000
+     */
+    public void setRaveEquivalence(double raveEquivalence) {
+        if (raveEquivalence <= 0) {
+            throw new IllegalArgumentException("The RAVE equivalence must be positive");
+        }
+        this.raveEquivalence = raveEquivalence;
+    }
+
+    /**
+     * Turns sharing of positions reached by different move orders on or off, which clears the tree.
+     * With it on, the tree becomes a graph: a move into a position already in the tree links to that position's
+     * node, so its playouts and subtree count for every path into it instead of being repeated under each parent.
+     * The positions are found through a Zobrist keyed table of fixed size next to the tree.
+     * With Parallelism.ROOT every thread's tree only shares positions within itself, so the trees stay independent.
+     * @param transpositions whether to share positions, off by default
+     */
+    public void setTranspositions(boolean transpositions) {
+        tree.setTranspositions(transpositions);
+        previousRoots = new int[0];
+    }
+
+    /**
+     * @param reuseTree whether makeMove continues from the statistics of the last call when the new
+     *                  position is in its tree, on by default
+     */
+    public void setReuseTree(boolean reuseTree) {
+        this.reuseTree = reuseTree;
+    }
+
+    /**
+     * @return visits of the root after the last makeMove call, including those kept from earlier calls
+     */
+    public int getRootVisits() {
+        return previousRoots.length > 0 ? tree.getVisits(previousRoots[0]) : 0;
+    }
+
+    /**
+     * @return visits of each root move after the last makeMove call by square, added up over the trees
+     */
+    public int[] getRootMoveVisits() {
+        int[] visits = new int[BitBoard.NUM_SQUARES];
+        rootVisits(previousRoots, visits);
+        return visits;
+    }
+
+    /**
+     * Runs playouts until the iteration, time or node budget runs out, or until the move is decided,
+     * and picks the move with the most visits
+     */
     @Override
     public BoardSpace makeMove(BoardSpace[][] board, Player p1) {
+        if (iterations == 0 && timeLimitMillis == 0 && nodeLimit == 0) {
+            throw new IllegalStateException("MCTS needs an iteration, time or node budget");
+        }
         computerPlayer = p1;
-        opponent = createOpponent(p1);
-        MCTSNode root = new MCTSNode(board, computerPlayer.getColor(), null, null);
-
-        //run 1000 MCTS iterations
-        for (int i = 0; i < NUM_ITERATIONS; i++) {
-            MCTSNode node = select(root);
-            MCTSNode expandedNode = expand(node);
-            if (expandedNode == null) continue;
-            double result = simulate(expandedNode);
-            backPropagate(expandedNode, result);
+        BitBoard rootBoard = BitBoard.fromBoard(board, computerPlayer.getColor());
+        // wins are counted for the computer player, so a tree grown for the other color is no use
+        if (previousColor != computerPlayer.getColor()) {
+            previousRoots = new int[0];
+            previousColor = computerPlayer.getColor();
+        }
+        //check if no move can be made, before spending the budget on it
+        if (rootBoard.getLegalMoves() == 0) {
+            return null;
+        }
+        int[] roots = findRoots(rootBoard, threads > 1 && parallelism == Parallelism.ROOT ? threads : 1);
+
+        //run MCTS playouts until a budget runs out, shared between the threads
+        startedIterations.set(0);
+        createdNodes.set(0);
+        stopped = false;
+        startTime = System.nanoTime();
+        deadline = startTime + timeLimitMillis * 1_000_000;
+        searchRoots = roots;
+        if (threads == 1) {
+            runIterations(roots[0]);
+        } else {
+            if (pool == null) {
+                pool = new ForkJoinPool(threads);
+            }
+            if (parallelism == Parallelism.LEAF) {
+                runLeafParallel(roots[0]);
+            } else {
+                List<ForkJoinTask<?>> workers = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    int root = roots[i % roots.length];
+                    workers.add(ForkJoinTask.adapt(() -> runIterations(root)));
+                }
+                pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(workers)));
+            }
         }
 
-        //find the best move/child with max visits
-        MCTSNode bestNode = null;
-        int maxVisits = -1;
+        previousRoots = roots;
 
-        for (MCTSNode child : root.getChildren()) {
-            if (child.getVisits() > maxVisits) {
-                maxVisits = child.getVisits();
-                bestNode = child;
+        //find the best move with max visits, added up over all trees
+        int[] visits = new int[BitBoard.NUM_SQUARES];
+        long expandedMoves = rootVisits(roots, visits);
+        int bestMove = MCTSTree.NONE;
+        int maxVisits = -1;
+        for (long moves = expandedMoves; moves != 0; moves &= moves - 1) {
+            int move = Long.numberOfTrailingZeros(moves);
+            if (visits[move] > maxVisits) {
+                maxVisits = visits[move];
+                bestMove = move;
             }
         }
 
         //check if no move can be made
-        if (bestNode == null || bestNode.getMove() == null) {
+        if (bestMove == MCTSTree.NONE) {
             return null;
         }
 
         //get the coordinates of this best move
-        BoardSpace bestMove = bestNode.getMove();
-        int x = bestMove.getX();
-        int y = bestMove.getY();
+        int x = BitBoard.getX(bestMove);
+        int y = BitBoard.getY(bestMove);
 
         //if the coordinates are within bound of the board, return this move
         if (x >= 0 && x < board.length &&
@@ -52,223 +280,400 @@ public class MCTS implements Strategy {
         return null;
     }
 
-    private MCTSNode select(MCTSNode node) {
-        //Traverse the tree along nodes with max UCT values until a leaf node is found
-        while (!node.isLeaf()) {
-            if (!node.isFullyExpanded()) {
-                return node;
+    /**
+     * Adds up the visits of every root move over the trees
+     * @param visits receives the visits by square
+     * @return a mask of the moves expanded in any tree
+     */
+    private long rootVisits(int[] roots, int[] visits) {
+        long expandedMoves = 0;
+        for (int root : roots) {
+            for (int child = tree.getFirstChild(root); child != MCTSTree.NONE; child = tree.getNextSibling(child)) {
+                visits[tree.getMove(child)] += tree.getVisits(tree.resolve(child));
+                expandedMoves |= 1L << tree.getMove(child);
             }
+        }
+        return expandedMoves;
+    }
 
-            //if th current node has been fully expanded, find the child with highest UCT value
-            MCTSNode bestChild = null;
-            double bestValue = Double.NEGATIVE_INFINITY;
-            for (MCTSNode child : node.getChildren()) {
-                double uctValue;
-                //if the child has not been visited, set its UCT value to positive infinity
-                if (child.getVisits() == 0) {
-                    uctValue = Double.POSITIVE_INFINITY;
-                } else {
-                    uctValue = (child.getWins() / child.getVisits()) +
-                            Constants.EXPLORATION_PARAM * Math.sqrt(Math.log(node.getVisits()) / child.getVisits());
-                }
-                if (uctValue > bestValue) {
-                    bestValue = uctValue;
-                    bestChild = child;
-                }
+    /**
+     * Claims the next playouts for a thread
+     * @param playouts number of playouts the thread is about to run
+     * @return false if the search is over
+     */
+    private boolean startIteration(int playouts) {
+        if (stopped) {
+            return false;
+        }
+        int started = startedIterations.getAndAdd(playouts);
+        if ((iterations > 0 && started >= iterations) || (nodeLimit > 0 && createdNodes.get() >= nodeLimit)) {
+            stopped = true;
+            return false;
+        }
+        if (started % CHECK_INTERVAL < playouts && started > 0) {
+            long now = System.nanoTime();
+            if ((timeLimitMillis > 0 && now >= deadline) || (earlyStop && isDecided(started, now))) {
+                stopped = true;
+                return false;
             }
+        }
+        return true;
+    }
 
-            if (bestChild == null) {
-                return node;
+    /**
+     * Checks whether the second most visited root move could still catch up with the most visited one,
+     * if every remaining playout went to it. With a time limit, the remaining playouts are estimated
+     * from the rate so far.
+     */
+    private boolean isDecided(int started, long now) {
+        long remaining = Long.MAX_VALUE;
+        if (iterations > 0) {
+            remaining = iterations - started;
+        }
+        if (timeLimitMillis > 0) {
+            long elapsed = Math.max(now - startTime, 1);
+            remaining = Math.min(remaining, (long) ((double) started * (deadline - now) / elapsed));
+        }
+        if (nodeLimit > 0) {
+            // a playout adds at most one node
+            remaining = Math.min(remaining, nodeLimit - createdNodes.get());
+        }
+        int[] visits = new int[BitBoard.NUM_SQUARES];
+        long expandedMoves = rootVisits(searchRoots, visits);
+        int best = 0;
+        int second = 0;
+        for (long moves = expandedMoves; moves != 0; moves &= moves - 1) {
+            int count = visits[Long.numberOfTrailingZeros(moves)];
+            if (count > best) {
+                second = best;
+                best = count;
+            } else if (count > second) {
+                second = count;
             }
-            node = bestChild;
         }
-        return node;
+        return best - second > remaining;
     }
 
-    private MCTSNode expand(MCTSNode node) {
-        Player currentPlayer = new HumanPlayer();
-        currentPlayer.setColor(node.getNextPlayer());
-        Map<BoardSpace, List<BoardSpace>> availableMoves = currentPlayer.getAvailableMoves(node.getBoardState());
-
-        if (availableMoves.isEmpty()) {
-            return null;
+    /**
+     * Finds or creates the roots of this call. Each root of the last call is searched for the position,
+     * which is usually two plies below it after the computer's move and the opponent's reply.
+     * The nodes found are kept with their subtrees and the rest of the tree is dropped.
+     * The tree is cleared instead if the kept part would fill more than half of it.
+     * @param count number of roots, one per tree
+     * @return the roots, new ones for the trees that didn't contain the position
+     */
+    private int[] findRoots(BitBoard position, int count) {
+        int[] roots = new int[count];
+        int[] found = new int[count];
+        int foundCount = 0;
+        for (int i = 0; i < count; i++) {
+            roots[i] = reuseTree && i < previousRoots.length ? findPosition(previousRoots[i], position) : MCTSTree.NONE;
+            if (roots[i] != MCTSTree.NONE) {
+                found[foundCount++] = roots[i];
+            }
         }
 
-        //find all expandable nodes/moves
-        for (BoardSpace move : availableMoves.keySet()) {
-            boolean alreadyExpanded = false;
-            for (MCTSNode child : node.getChildren()) {
-                if (child.getMove().equals(move)) {
-                    alreadyExpanded = true;
-                    break;
+        if (foundCount == 0) {
+            tree.clear();
+        } else {
+            found = Arrays.copyOf(found, foundCount);
+            tree.retain(found);
+            if (tree.size() > tree.capacity() / 2) {
+                tree.clear();
+                Arrays.fill(roots, MCTSTree.NONE);
+            } else {
+                for (int i = 0, j = 0; i < count; i++) {
+                    if (roots[i] != MCTSTree.NONE) {
+                        roots[i] = found[j++];
+                    }
                 }
             }
+        }
 
-            if (!alreadyExpanded) {
-                BoardSpace[][] newBoard = deepCopyBoard(node.getBoardState());
-                simulateTakeSpaces(newBoard, availableMoves, move, node.getNextPlayer());
-
-                BoardSpace.SpaceType nextPlayer;
-                if (node.getNextPlayer() == computerPlayer.getColor()) {
-                    nextPlayer = opponent.getColor();
-                } else {
-                    nextPlayer = computerPlayer.getColor();
+        for (int i = 0; i < count; i++) {
+            if (roots[i] == MCTSTree.NONE) {
+                // every root tree is its own group, so that transpositions don't join the trees
+                roots[i] = tree.addRoot(position, i);
+                if (roots[i] == MCTSTree.NONE) {
+                    throw new IllegalStateException("The tree can't hold one root per thread");
                 }
-
-                MCTSNode child = new MCTSNode(newBoard, nextPlayer, node, move);
-                node.addChild(child);
-                return child;
             }
         }
-
-        return null;
+        return roots;
     }
 
-    private double simulate(MCTSNode node) {
-        BoardSpace[][] simulatedBoard = deepCopyBoard(node.getBoardState());
-        BoardSpace.SpaceType currentPlayerColor = node.getNextPlayer();
-
-        Player activePlayer = new HumanPlayer();
-        activePlayer.setColor(currentPlayerColor);
-        Player waitingPlayer = createOpponent(activePlayer);
-
-        while (true) {
-            Map<BoardSpace, List<BoardSpace>> availableMoves = activePlayer.getAvailableMoves(simulatedBoard);
+    /**
+     * @return the node for position among root and its grandchildren, NONE if there is none
+     */
+    private int findPosition(int root, BitBoard position) {
+        if (tree.isPosition(root, position)) {
+            return root;
+        }
+        for (int child = tree.getFirstChild(root); child != MCTSTree.NONE; child = tree.getNextSibling(child)) {
+            for (int grandchild = tree.getFirstChild(tree.resolve(child)); grandchild != MCTSTree.NONE;
+                 grandchild = tree.getNextSibling(grandchild)) {
+                if (tree.isPosition(grandchild, position)) {
+                    return tree.resolve(grandchild);
+                }
+            }
+        }
+        return MCTSTree.NONE;
+    }
 
-            if (availableMoves.isEmpty()) {
-                Map<BoardSpace, List<BoardSpace>> opponentMoves = waitingPlayer.getAvailableMoves(simulatedBoard);
-                if (opponentMoves.isEmpty()) {
-                    return calculateResult(simulatedBoard);
+    /**
+     * Runs iterations until the search is stopped, see startIteration
+     */
+    private void runIterations(int root) {
+        long[] played = rave ? new long[2] : null;
+        int[] path = new int[MAX_PATH];
+        while (startIteration(1)) {
+            int length = select(root, path);
+            int node = tree.resolve(path[length - 1]);
+            int expandedNode = expand(node);
+            if (expandedNode == MCTSTree.NONE) {
+                if (tree.getLegalMoves(node) != 0 && tree.size() < tree.capacity()) {
+                    //another thread expanded the last move first
+                    abandon(path, length);
+                    continue;
                 }
-                //skip current player, and swap players
-                Player playerSwap = activePlayer;
-                activePlayer = waitingPlayer;
-                waitingPlayer = playerSwap;
+                //a pass, the end of the game or a full tree, play out from the node itself
             } else {
-                //current player make a random move
-                List<BoardSpace> moves = new ArrayList<>(availableMoves.keySet());
-                int randomIndex = (int) (Math.random() * moves.size());
-                BoardSpace randomMove = moves.get(randomIndex);
-                simulateTakeSpaces(simulatedBoard, availableMoves, randomMove, activePlayer.getColor());
-
-                //swap players after move made
-                Player playerSwap = activePlayer;
-                activePlayer = waitingPlayer;
-                waitingPlayer = playerSwap;
+                path[length++] = expandedNode;
+            }
+            double result = simulate(tree.resolve(path[length - 1]), played);
+            backPropagate(path, length, result, 1);
+            if (rave) {
+                tree.updateAmaf(path, length, result, played[0], played[1]);
             }
         }
     }
 
-    private double calculateResult(BoardSpace[][] board) {
-        int computerScore = countDiscs(board, computerPlayer.getColor());
-        int opponentScore = countDiscs(board, opponent.getColor());
-        if (computerScore > opponentScore) return 1.0;
-        if (computerScore < opponentScore) return 0.0;
-        return 0.5;
+    /**
+     * Selects and expands on the calling thread, and plays out every new node once per thread
+     * on the pool. The tree is only touched by the calling thread, but the threads wait for
+     * each other's playouts before the next iteration.
+     */
+    private void runLeafParallel(int root) {
+        int[] path = new int[MAX_PATH];
+        while (startIteration(threads)) {
+            int length = select(root, path);
+            int expandedNode = expand(tree.resolve(path[length - 1]));
+            //only this thread expands, so no new child means a pass, the end of the game or a full tree
+            if (expandedNode != MCTSTree.NONE) {
+                path[length++] = expandedNode;
+            }
+            int pathLength = length;
+            int leaf = tree.resolve(path[length - 1]);
+            List<ForkJoinTask<Double>> playouts = new ArrayList<>();
+            long[][] played = new long[threads][];
+            for (int i = 0; i < threads; i++) {
+                long[] movesOfPlayout = rave ? new long[2] : null;
+                played[i] = movesOfPlayout;
+                playouts.add(ForkJoinTask.adapt(() -> simulate(leaf, movesOfPlayout)));
+            }
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(playouts)));
+            double wins = 0;
+            for (int i = 0; i < threads; i++) {
+                double result = playouts.get(i).join();
+                wins += result;
+                if (rave) {
+                    tree.updateAmaf(path, pathLength, result, played[i][0], played[i][1]);
+                }
+            }
+            backPropagate(path, pathLength, wins, threads);
+        }
     }
 
-    private void backPropagate(MCTSNode node, double result) {
-        while (node != null) {
-            node.addVisits();
-            node.addWins(result);
-            node = node.getParent();
+    /**
+     * Takes back the visits select added on the path, when its iteration found nothing to expand
+     */
+    private void abandon(int[] path, int length) {
+        for (int i = 0; i < length; i++) {
+            tree.addVisits(tree.resolve(path[i]), -1);
         }
     }
 
-    private Player createOpponent(Player player) {
-        Player opponent = new HumanPlayer();
+    /**
+     * Finds the node to expand, adding a visit to every node on the way. Until backPropagate adds the result,
+     * those visits count as losses, which lowers the UCT value of the path for the other threads.
+     * The path is kept as the entries taken from each parent's list, since with transpositions a node
+     * can be reached from several parents and its own parent link may lead elsewhere.
+     * @param path receives the root and the entries chosen below it
+     * @return the number of entries on the path, the last one leads to the node to expand
+     */
+    private int select(int node, int[] path) {
+        int length = 0;
+        path[length++] = node;
+        tree.addVisits(node, 1);
+        //Traverse the tree along nodes with max UCT values until a leaf node is found
+        while (!tree.isLeaf(node)) {
+            if (!tree.isFullyExpanded(node)) {
+                return length;
+            }
 
-        if (player.getColor() == BoardSpace.SpaceType.BLACK) {
-            opponent.setColor(BoardSpace.SpaceType.WHITE);
-        } else {
-            opponent.setColor(BoardSpace.SpaceType.BLACK);
+            //if th current node has been fully expanded, find the child with highest UCT value
+            int bestChild = MCTSTree.NONE;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            double logVisits = Math.log(tree.getVisits(node));
+            for (int child = tree.getFirstChild(node); child != MCTSTree.NONE; child = tree.getNextSibling(child)) {
+                double uctValue;
+                int childVisits = tree.getVisits(tree.resolve(child));
+                //if the child has not been visited, set its UCT value to positive infinity
+                if (childVisits == 0) {
+                    uctValue = Double.POSITIVE_INFINITY;
+                } else {
+                    uctValue = value(child, childVisits) +
+                            Constants.EXPLORATION_PARAM * Math.sqrt(logVisits / childVisits);
+                }
+                if (uctValue > bestValue) {
+                    bestValue = uctValue;
+                    bestChild = child;
+                }
+            }
+
+            if (bestChild == MCTSTree.NONE) {
+                return length;
+            }
+            path[length++] = bestChild;
+            node = tree.resolve(bestChild);
+            tree.addVisits(node, 1);
         }
+        return length;
+    }
 
-        return opponent;
+    /**
+     * @return the win rate of child, blended with the AMAF win rate of its move when RAVE is on
+     */
+    private double value(int child, int childVisits) {
+        double winRate = tree.getWins(tree.resolve(child)) / childVisits;
+        int amafVisits = tree.getAmafVisits(child);
+        if (!rave || amafVisits == 0) {
+            return winRate;
+        }
+        double weight = raveWeight(childVisits);
+        return (1 - weight) * winRate + weight * tree.getAmafWins(child) / amafVisits;
     }
 
-    private int countDiscs(BoardSpace[][] board, BoardSpace.SpaceType color) {
-        int count = 0;
-        for (BoardSpace[] row : board) {
-            for (BoardSpace space : row) {
-                if (space.getType() == color) count++;
-            }
+    /**
+     * Weight of the AMAF value, sqrt(k / (3n + k)) for n visits and the equivalence k:
+     * 1 for an unvisited child, one half at k visits and falling towards 0 after that
+     */
+    private double raveWeight(int visits) {
+        return Math.sqrt(raveEquivalence / (3.0 * visits + raveEquivalence));
+    }
+
+    /**
+     * Adds a child for the next untried move of node, see MCTSTree.expand
+     * @return the new entry, its node already visited once, or NONE if node has no untried move or the tree is full
+     */
+    private int expand(int node) {
+        int child = tree.expand(node);
+        if (child != MCTSTree.NONE) {
+            tree.addVisits(tree.resolve(child), 1);
+            createdNodes.incrementAndGet();
         }
-        return count;
+        return child;
     }
 
-    private BoardSpace[][] deepCopyBoard(BoardSpace[][] original) {
-        BoardSpace[][] copy = new BoardSpace[original.length][original[0].length];
-        for (int i = 0; i < original.length; i++) {
-            for (int j = 0; j < original[i].length; j++) {
-                copy[i][j] = new BoardSpace(original[i][j]);
-            }
+    /**
+     * Plays a random game from the position of node, see rollout, with a seed drawn from the thread's generator
+     * @param played receives the squares played by black and by white, null if they aren't needed
+     * @return the result for the computer player, 1 for a win, 0.5 for a draw and 0 for a loss
+     */
+    private double simulate(int node, long[] played) {
+        int difference = rollout(tree.getBlack(node), tree.getWhite(node),
+                tree.getSideToMove(node) == BoardSpace.SpaceType.BLACK, ThreadLocalRandom.current().nextLong(),
+                played, null);
+        if (computerPlayer.getColor() == BoardSpace.SpaceType.WHITE) {
+            difference = -difference;
         }
-        return copy;
+        if (difference > 0) return 1.0;
+        if (difference < 0) return 0.0;
+        return 0.5;
     }
 
-    //same simulateTakeSpaces method borrowed from Minimax
-    private void simulateTakeSpaces(BoardSpace[][] simulatedBoard,
-                                    Map<BoardSpace, List<BoardSpace>> availableMoves,
-                                    BoardSpace selectedDestination,
-                                    BoardSpace.SpaceType playerColor) {
-        simulatedBoard[selectedDestination.getX()][selectedDestination.getY()].setType(playerColor);
+    /**
+     * Plays random moves until the game ends. The game is played on the disc masks of the side to move
+     * and the other side, which swap after every move, so a playout allocates nothing.
+     * The moves are drawn from an xorshift generator seeded once, which stays in a local variable.
+     * @param seed start of the generator, the same seed plays the same game
+     * @param played receives the squares played by black and by white, null if they aren't needed
+     * @param moves receives every square played in order, BitBoard.PASS for a pass, null if they aren't needed.
+     *              Needs room for 2 * BitBoard.NUM_SQUARES entries
+     * @return the final number of black discs minus white discs
+     */
+    public static int rollout(long black, long white, boolean blackToMove, long seed, long[] played, int[] moves) {
+        long player = blackToMove ? black : white;
+        long opponent = blackToMove ? white : black;
+        // every square is played at most once in a game, so a mask per side holds all their moves
+        long blackMoves = 0;
+        long whiteMoves = 0;
+        int count = 0;
+        // xorshift gets stuck at 0, so the state must have a bit set
+        long random = seed | 1;
 
-        List<BoardSpace> origins = availableMoves.get(selectedDestination);
-        for (BoardSpace origin : origins) {
-            if (origin.getX() == selectedDestination.getX()) {
-                int direction = origin.getY() - selectedDestination.getY();
-                if (direction > 0) {
-                    for (int y = origin.getY(); y > selectedDestination.getY(); --y) {
-                        simulatedBoard[origin.getX()][y].setType(playerColor);
-                    }
-                } else {
-                    for (int y = origin.getY(); y < selectedDestination.getY(); ++y) {
-                        simulatedBoard[origin.getX()][y].setType(playerColor);
-                    }
-                }
-                continue;
-            }
+        //a full board ends the game without generating any moves
+        while ((player | opponent) != -1L) {
+            long availableMoves = BitBoard.legalMoves(player, opponent);
 
-            if (origin.getY() == selectedDestination.getY()) {
-                int direction = origin.getX() - selectedDestination.getX();
-                if (direction > 0) {
-                    for (int x = origin.getX(); x > selectedDestination.getX(); --x) {
-                        simulatedBoard[x][origin.getY()].setType(playerColor);
-                    }
-                } else {
-                    for (int x = origin.getX(); x < selectedDestination.getX(); ++x) {
-                        simulatedBoard[x][origin.getY()].setType(playerColor);
-                    }
+            if (availableMoves == 0) {
+                //skip current player, and swap players; the game is over if they can't move either
+                availableMoves = BitBoard.legalMoves(opponent, player);
+                if (availableMoves == 0) {
+                    break;
+                }
+                long passed = player;
+                player = opponent;
+                opponent = passed;
+                blackToMove = !blackToMove;
+                if (moves != null) {
+                    moves[count++] = BitBoard.PASS;
                 }
-                continue;
             }
 
-            if (origin.getX() > selectedDestination.getX()) {
-                int direction = origin.getY() - selectedDestination.getY();
-                if (direction > 0) {
-                    for (int xy = 0; xy < direction; ++xy) {
-                        simulatedBoard[origin.getX() - xy][origin.getY() - xy].setType(playerColor);
-                    }
-                } else {
-                    for (int xy = 0; xy < -direction; ++xy) {
-                        simulatedBoard[origin.getX() - xy][origin.getY() + xy].setType(playerColor);
-                    }
-                }
-                continue;
+            //current player make a random move, which swaps players
+            random ^= random << 13;
+            random ^= random >>> 7;
+            random ^= random << 17;
+            // scale the top 32 bits to the number of moves, which avoids a division
+            int randomIndex = (int) (((random >>> 32) * Long.bitCount(availableMoves)) >>> 32);
+            int square = BitBoard.nthSquare(availableMoves, randomIndex);
+            if (blackToMove) {
+                blackMoves |= 1L << square;
+            } else {
+                whiteMoves |= 1L << square;
             }
-            if (origin.getX() < selectedDestination.getX()) {
-                int direction = origin.getY() - selectedDestination.getY();
-                if (direction > 0) {
-                    for (int xy = 0; xy < direction; ++xy) {
-                        simulatedBoard[origin.getX() + xy][origin.getY() - xy].setType(playerColor);
-                    }
-                } else {
-                    for (int xy = 0; xy < -direction; ++xy) {
-                        simulatedBoard[origin.getX() + xy][origin.getY() + xy].setType(playerColor);
-                    }
-                }
+            if (moves != null) {
+                moves[count++] = square;
+            }
+            long flipped = BitBoard.flips(player, opponent, square);
+            long moved = player | flipped | (1L << square);
+            player = opponent & ~flipped;
+            opponent = moved;
+            blackToMove = !blackToMove;
+        }
+        if (played != null) {
+            played[0] = blackMoves;
+            played[1] = whiteMoves;
+        }
+        long blackDiscs = blackToMove ? player : opponent;
+        long whiteDiscs = blackToMove ? opponent : player;
+        return Long.bitCount(blackDiscs) - Long.bitCount(whiteDiscs);
+    }
+
+    /**
+     * Adds the results to the node of every entry on the path. select and expand already counted one visit,
+     * so only the visits of any further playouts are added.
+     * @param wins sum of the results of the playouts
+     * @param playouts number of playouts from the last node on the path
+     */
+    private void backPropagate(int[] path, int length, double wins, int playouts) {
+        for (int i = 0; i < length; i++) {
+            int node = tree.resolve(path[i]);
+            if (playouts > 1) {
+                tree.addVisits(node, playouts - 1);
             }
+            tree.addWins(node, wins);
         }
     }
 }
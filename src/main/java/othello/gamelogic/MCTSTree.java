@@ -0,0 +1,499 @@
+package othello.gamelogic;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Search tree of MCTS, stored as parallel primitive arrays that are allocated once.
+ * A node is an index into the arrays, which hold its position, its statistics and its links
+ * to its parent, its first child and its next sibling, so adding a node never allocates.
+ * Children are only ever added after their parent, so a parent's index is always lower than its children's.
+ * Several search threads can share one tree: the counters are updated atomically, a node's untried moves
+ * are claimed with a compare-and-set, and a new child is fully written before it is linked into its parent's list.
+ * <p>
+ * With transpositions on, the tree becomes a graph: a table keyed by Zobrist key finds the node of every
+ * position already in the tree, and a move that reaches one of them from another parent adds an alias entry
+ * to the parent's list instead of a new node. The alias shares the statistics and children of the node it
+ * stands for, see resolve, but keeps its own move and AMAF statistics, which belong to the move.
+ */
+public class MCTSTree {
+    // Index of no node, and move of a root, which was not reached by a move
+    public static final int NONE = -1;
+
+    // Odd multiplier that spreads group numbers over the key, different groups never get the same key
+    private static final long GROUP_KEY = 0x9E3779B97F4A7C15L;
+    // Slots of the position table tried for a key before giving up, which bounds lookups and inserts
+    private static final int MAX_PROBES = 16;
+
+    // Atomic access to single elements of the arrays
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    // Position of each node
+    private final long[] black;
+    private final long[] white;
+    private final boolean[] blackToMove;
+    // Zobrist key of each position, only kept up to date with transpositions on
+    private final long[] keys;
+    // The node whose statistics and children an entry uses: the entry itself, or for an alias the node
+    // of the same position found in the table
+    private final int[] shared;
+    // Legal moves of the side to move, generated once, and those of them that have no child yet
+    private final long[] legalMoves;
+    private final long[] untriedMoves;
+    private final int[] parent;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    // Square of the move that led to each node
+    private final int[] move;
+    private final int[] visits;
+    // Wins in half points, so that draws can be added atomically
+    private final long[] halfWins;
+    // All-moves-as-first statistics of the move that led to each node: playouts through its parent
+    // in which the same side played that square at any later point, and their wins in half points
+    private final int[] amafVisits;
+    private final long[] amafHalfWins;
+    // Number of nodes in use, nodes are handed out from the front of the arrays
+    private final AtomicInteger size = new AtomicInteger();
+    // New index of every node while the tree is compacted by retain
+    private final int[] remap;
+    // Open addressing table of node + 1 by Zobrist key, 0 for an empty slot, null with transpositions off
+    private int[] positions;
+
+    /**
+     * @param capacity maximum number of nodes
+     */
+    public MCTSTree(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The tree needs room for at least one node");
+        }
+        black = new long[capacity];
+        white = new long[capacity];
+        blackToMove = new boolean[capacity];
+        keys = new long[capacity];
+        shared = new int[capacity];
+        legalMoves = new long[capacity];
+        untriedMoves = new long[capacity];
+        parent = new int[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        move = new int[capacity];
+        visits = new int[capacity];
+        halfWins = new long[capacity];
+        amafVisits = new int[capacity];
+        amafHalfWins = new long[capacity];
+        remap = new int[capacity];
+    }
+
+    public int capacity() {
+        return parent.length;
+    }
+
+    /**
+     * @return the number of nodes in use
+     */
+    public int size() {
+        return Math.min(size.get(), capacity());
+    }
+
+    /**
+     * Removes every node
+     */
+    public void clear() {
+        size.set(0);
+        if (positions != null) {
+            Arrays.fill(positions, 0);
+        }
+    }
+
+    /**
+     * Turns sharing of nodes between move orders that reach the same position on or off, and removes every node.
+     * The position table takes about 16 bytes per node of capacity.
+     */
+    public void setTranspositions(boolean transpositions) {
+        if (!transpositions) {
+            positions = null;
+        } else if (positions == null) {
+            positions = new int[Math.min(Integer.highestOneBit(capacity()) << 2, 1 << 30)];
+        }
+        clear();
+    }
+
+    public boolean hasTranspositions() {
+        return positions != null;
+    }
+
+    /**
+     * Adds a node without a parent, in group 0
+     * @return the index of the new node, NONE if the tree is full
+     */
+    public int addRoot(BitBoard position) {
+        return addRoot(position, 0);
+    }
+
+    /**
+     * Adds a node without a parent. With transpositions on, positions are only shared between nodes below
+     * roots of the same group, so trees that must stay independent are given different groups.
+     * The group is mixed into the Zobrist key of the root, and so into the keys of every node below it.
+     * @return the index of the new node, NONE if the tree is full
+     */
+    public int addRoot(BitBoard position, int group) {
+        int node = allocate();
+        if (node != NONE) {
+            init(node, NONE, NONE, position.getBlack(), position.getWhite(),
+                    position.getSideToMove() == BoardSpace.SpaceType.BLACK,
+                    position.getKey() ^ (group * GROUP_KEY));
+            insert(node);
+        }
+        return node;
+    }
+
+    /**
+     * Adds a child for the lowest untried move of node. The move is claimed before the child is written,
+     * so two threads can't add the same move. With transpositions on, the child is an alias if its position
+     * is already in the tree.
+     * @return the index of the new child, NONE if node has no untried move or the tree is full
+     */
+    public int expand(int node) {
+        if (size.get() >= capacity()) {
+            return NONE;
+        }
+        int square = takeUntriedMove(node);
+        if (square == NONE) {
+            return NONE;
+        }
+        int child = allocate();
+        if (child == NONE) {
+            // give the move back, so the node doesn't look fully expanded
+            LONGS.getAndBitwiseOr(untriedMoves, node, 1L << square);
+            return NONE;
+        }
+
+        long player = blackToMove[node] ? black[node] : white[node];
+        long opponent = blackToMove[node] ? white[node] : black[node];
+        long flipped = BitBoard.flips(player, opponent, square);
+        player |= flipped | (1L << square);
+        opponent &= ~flipped;
+        boolean childBlackToMove = !blackToMove[node];
+        long childBlack = childBlackToMove ? opponent : player;
+        long childWhite = childBlackToMove ? player : opponent;
+        long key = 0;
+        if (positions != null) {
+            BoardSpace.SpaceType color = blackToMove[node] ? BoardSpace.SpaceType.BLACK : BoardSpace.SpaceType.WHITE;
+            key = keys[node] ^ Zobrist.place(color, square) ^ Zobrist.flip(flipped) ^ Zobrist.side();
+        }
+        init(child, node, square, childBlack, childWhite, childBlackToMove, key);
+        if (positions != null) {
+            int existing = find(key, childBlack, childWhite, childBlackToMove);
+            if (existing != NONE) {
+                // the alias is never expanded itself, its node's children are used instead
+                shared[child] = existing;
+                untriedMoves[child] = 0;
+            } else {
+                insert(child);
+            }
+        }
+
+        // push the child onto the parent's list, it is fully written before other threads can reach it
+        int head;
+        do {
+            head = (int) INTS.getVolatile(firstChild, node);
+            nextSibling[child] = head;
+        } while (!INTS.compareAndSet(firstChild, node, head, child));
+        return child;
+    }
+
+    private int allocate() {
+        int node = size.getAndIncrement();
+        return node < capacity() ? node : NONE;
+    }
+
+    private void init(int node, int parentNode, int square, long blackDiscs, long whiteDiscs, boolean blackMoves,
+                      long key) {
+        black[node] = blackDiscs;
+        white[node] = whiteDiscs;
+        blackToMove[node] = blackMoves;
+        keys[node] = key;
+        shared[node] = node;
+        long moves = blackMoves ? BitBoard.legalMoves(blackDiscs, whiteDiscs) : BitBoard.legalMoves(whiteDiscs, blackDiscs);
+        legalMoves[node] = moves;
+        untriedMoves[node] = moves;
+        parent[node] = parentNode;
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        move[node] = square;
+        visits[node] = 0;
+        halfWins[node] = 0;
+        amafVisits[node] = 0;
+        amafHalfWins[node] = 0;
+    }
+
+    /**
+     * @return the node in the position table for the position, NONE if there is none
+     */
+    private int find(long key, long blackDiscs, long whiteDiscs, boolean blackMoves) {
+        int mask = positions.length - 1;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            int slot = (int) INTS.getVolatile(positions, (int) (key + probe) & mask);
+            if (slot == 0) {
+                return NONE;
+            }
+            int node = slot - 1;
+            // the position is compared as well, so a key collision can't join two different positions
+            if (keys[node] == key && black[node] == blackDiscs && white[node] == whiteDiscs
+                    && blackToMove[node] == blackMoves) {
+                return node;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Adds a fully written node to the position table. If two threads add the same position at once both
+     * nodes may end up in the table, which only means the position isn't shared. If every probed slot is
+     * taken the node is left out, so the table never grows.
+     */
+    private void insert(int node) {
+        if (positions == null) {
+            return;
+        }
+        int mask = positions.length - 1;
+        for (int probe = 0; probe < MAX_PROBES; probe++) {
+            if (INTS.compareAndSet(positions, (int) (keys[node] + probe) & mask, 0, node + 1)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Claims the lowest legal move of node without a child
+     * @return the square of the move, NONE if there is none left
+     */
+    private int takeUntriedMove(int node) {
+        while (true) {
+            long untried = (long) LONGS.getVolatile(untriedMoves, node);
+            if (untried == 0) {
+                return NONE;
+            }
+            if (LONGS.compareAndSet(untriedMoves, node, untried, untried & (untried - 1))) {
+                return Long.numberOfTrailingZeros(untried);
+            }
+        }
+    }
+
+    /**
+     * Compacts the tree so that it only holds the subtrees of the given nodes, which become roots.
+     * Because parents come before their children, one pass in index order finds and moves every kept node.
+     * The node an alias stands for usually comes before the alias, but not always: while one thread writes
+     * the alias's slot, another can add the position with a higher index, which the alias then finds.
+     * Aliases are therefore resolved in a second pass, once every node has its new index.
+     * An alias of a dropped node becomes an unexpanded node of its own.
+     * @param roots nodes to keep, replaced by their new indices
+     */
+    public void retain(int[] roots) {
+        int used = size();
+        for (int node = 0; node < used; node++) {
+            remap[node] = NONE;
+        }
+        for (int root : roots) {
+            remap[root] = root;
+        }
+        int kept = 0;
+        for (int node = 0; node < used; node++) {
+            boolean isRoot = remap[node] == node;
+            if (!isRoot && (parent[node] == NONE || remap[parent[node]] == NONE)) {
+                continue;
+            }
+            remap[node] = kept;
+            black[kept] = black[node];
+            white[kept] = white[node];
+            blackToMove[kept] = blackToMove[node];
+            keys[kept] = keys[node];
+            legalMoves[kept] = legalMoves[node];
+            untriedMoves[kept] = untriedMoves[node];
+            // an alias holds the old index of its node until the second pass, as a negative number
+            // so it can't be mistaken for a new index
+            shared[kept] = shared[node] == node ? kept : -2 - shared[node];
+            parent[kept] = isRoot ? NONE : remap[parent[node]];
+            // children and siblings come later, so these still hold old indices until the second pass
+            firstChild[kept] = firstChild[node];
+            nextSibling[kept] = isRoot ? NONE : nextSibling[node];
+            move[kept] = move[node];
+            visits[kept] = visits[node];
+            halfWins[kept] = halfWins[node];
+            amafVisits[kept] = amafVisits[node];
+            amafHalfWins[kept] = amafHalfWins[node];
+            kept++;
+        }
+        for (int node = 0; node < kept; node++) {
+            firstChild[node] = relink(firstChild[node]);
+            nextSibling[node] = relink(nextSibling[node]);
+            if (shared[node] < 0) {
+                int sharedNode = remap[-2 - shared[node]];
+                if (sharedNode != NONE) {
+                    shared[node] = sharedNode;
+                } else {
+                    shared[node] = node;
+                    untriedMoves[node] = legalMoves[node];
+                }
+            }
+        }
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = remap[roots[i]];
+        }
+        size.set(kept);
+        if (positions != null) {
+            Arrays.fill(positions, 0);
+            for (int node = 0; node < kept; node++) {
+                if (shared[node] == node) {
+                    insert(node);
+                }
+            }
+        }
+    }
+
+    private int relink(int oldIndex) {
+        return oldIndex == NONE ? NONE : remap[oldIndex];
+    }
+
+    /**
+     * @return the node holding the statistics and children of entry, entry itself unless it is an alias
+     */
+    public int resolve(int entry) {
+        return shared[entry];
+    }
+
+    public long getBlack(int node) {
+        return black[node];
+    }
+
+    public long getWhite(int node) {
+        return white[node];
+    }
+
+    public BoardSpace.SpaceType getSideToMove(int node) {
+        return blackToMove[node] ? BoardSpace.SpaceType.BLACK : BoardSpace.SpaceType.WHITE;
+    }
+
+    /**
+     * @return whether node holds the same discs and side to move as position
+     */
+    public boolean isPosition(int node, BitBoard position) {
+        return black[node] == position.getBlack() && white[node] == position.getWhite()
+                && getSideToMove(node) == position.getSideToMove();
+    }
+
+    public long getLegalMoves(int node) {
+        return legalMoves[node];
+    }
+
+    /**
+     * @return the legal moves of node that no child has claimed yet
+     */
+    public long getUntriedMoves(int node) {
+        return (long) LONGS.getVolatile(untriedMoves, node);
+    }
+
+    public int getParent(int node) {
+        return parent[node];
+    }
+
+    /**
+     * @return the most recently added child of node, NONE if it has none
+     */
+    public int getFirstChild(int node) {
+        return (int) INTS.getVolatile(firstChild, node);
+    }
+
+    /**
+     * @return the child of the same parent added before node, NONE if it was the first
+     */
+    public int getNextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    /**
+     * @return the square of the move that led to node, NONE for a root
+     */
+    public int getMove(int node) {
+        return move[node];
+    }
+
+    public int getVisits(int node) {
+        return (int) INTS.getVolatile(visits, node);
+    }
+
+    public double getWins(int node) {
+        return (long) LONGS.getVolatile(halfWins, node) / 2.0;
+    }
+
+    public void addVisits(int node, int count) {
+        INTS.getAndAdd(visits, node, count);
+    }
+
+    /**
+     * @param result a multiple of 0.5, one result of 0, 0.5 or 1 per playout
+     */
+    public void addWins(int node, double result) {
+        LONGS.getAndAdd(halfWins, node, Math.round(result * 2));
+    }
+
+    public int getAmafVisits(int node) {
+        return (int) INTS.getVolatile(amafVisits, node);
+    }
+
+    public double getAmafWins(int node) {
+        return (long) LONGS.getVolatile(amafHalfWins, node) / 2.0;
+    }
+
+    /**
+     * Counts one playout in which the move of node was played by the same side somewhere below its parent
+     * @param result 0, 0.5 or 1
+     */
+    public void addAmaf(int node, double result) {
+        INTS.getAndAdd(amafVisits, node, 1);
+        LONGS.getAndAdd(amafHalfWins, node, Math.round(result * 2));
+    }
+
+    /**
+     * Walks a path from its end up to its root, adding the move of each entry to those of the side that made it.
+     * At every node on the way, each child whose move was made by the side to move there, in the tree
+     * below the node or in the playout, counts the result in its AMAF statistics.
+     * @param path entries from a root down to the node the playout started from, see resolve
+     * @param result result of the playout, 0, 0.5 or 1
+     * @param blackMoves squares black played in the playout
+     * @param whiteMoves squares white played in the playout
+     */
+    public void updateAmaf(int[] path, int length, double result, long blackMoves, long whiteMoves) {
+        for (int i = length - 1; i >= 0; i--) {
+            int node = resolve(path[i]);
+            long played = blackToMove[node] ? blackMoves : whiteMoves;
+            for (int child = getFirstChild(node); child != NONE; child = getNextSibling(child)) {
+                if ((played & (1L << move[child])) != 0) {
+                    addAmaf(child, result);
+                }
+            }
+            // the move of an entry is made by the side to move at the entry before it
+            if (i > 0) {
+                if (blackToMove[resolve(path[i - 1])]) {
+                    blackMoves |= 1L << move[path[i]];
+                } else {
+                    whiteMoves |= 1L << move[path[i]];
+                }
+            }
+        }
+    }
+
+    public boolean isLeaf(int node) {
+        return getFirstChild(node) == NONE;
+    }
+
+    /**
+     * @return true once every legal move has been claimed by expand, its child may still be on the way
+     */
+    public boolean isFullyExpanded(int node) {
+        return (long) LONGS.getVolatile(untriedMoves, node) == 0;
+    }
+}
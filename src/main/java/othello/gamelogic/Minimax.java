@@ -2,13 +2,218 @@ package othello.gamelogic;
 
 import othello.Constants;
 
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class Minimax implements Strategy {
-    private static final int MAX_DEPTH = 5; // Depth of minimax search
+    /**
+     * Search algorithms Minimax can run, both find the same score for the same depth.
+     */
+    public enum Algorithm {
+        // Alpha-beta pruning, every move is searched with the full window
+        ALPHA_BETA,
+        // Principal variation search: moves after the first are only proven worse with zero-width windows,
+        // and iterations after the first start with an aspiration window around the previous score
+        PVS
+    }
+
+    /**
+     * Ways of searching with more than one thread.
+     */
+    public enum Parallelism {
+        // The root moves are divided between the threads
+        ROOT_SPLIT,
+        // Every thread searches the whole tree, helpers only share their results through the transposition table
+        LAZY_SMP
+    }
+
+    private static final int MAX_DEPTH = 5; // Default maximum depth of minimax search
+    // Default time budget of one makeMove call
+    public static final long DEFAULT_TIME_LIMIT_MILLIS = 1000;
+    // How many nodes are searched between checks of the clock
+    private static final int CLOCK_CHECK_INTERVAL = 1024;
+    // Longest line the search can follow, every move and every pass takes one ply
+    private static final int MAX_PLY = 128;
+    // Memory used by the transposition table unless another budget is given
+    public static final long DEFAULT_TABLE_BYTES = 16L << 20;
+    // Half width of the first aspiration window, roughly the weight of an edge square
+    private static final int ASPIRATION_WINDOW = 50;
+    // Positions with at most this many empty squares are solved to the end of the game unless set otherwise
+    public static final int DEFAULT_ENDGAME_EMPTIES = 14;
+    // ROW_WEIGHTS[y][mask] is the sum of Constants.BOARD_WEIGHTS over the squares of row y set in mask
+    private static final int[][] ROW_WEIGHTS = new int[BitBoard.BOARD_SIZE][1 << BitBoard.BOARD_SIZE];
+
+    static {
+        for (int y = 0; y < BitBoard.BOARD_SIZE; y++) {
+            for (int mask = 1; mask < ROW_WEIGHTS[y].length; mask++) {
+                int x = Integer.numberOfTrailingZeros(mask);
+                ROW_WEIGHTS[y][mask] = ROW_WEIGHTS[y][mask & (mask - 1)] + Constants.BOARD_WEIGHTS[x][y];
+            }
+        }
+    }
+
     private Player maximizingPlayer; // The computer player
     private Player minimizingPlayer; // The opponent player
 
+    // Results of earlier searches, kept between makeMove calls. Scores are from the maximizer's view,
+    // so the table is cleared when this strategy starts playing for the other color.
+    // Entries are checked against their key, so all searching threads can share the table without locks.
+    private final TranspositionTable table;
+    private BoardSpace.SpaceType tableColor;
+    // Number of positions visited by the last makeMove call, every searcher adds its count in batches
+    private final AtomicLong nodes = new AtomicLong();
+
+    // Search limits, iterative deepening stops at whichever is reached first
+    private int maxDepth = MAX_DEPTH;
+    private long timeLimitMillis = DEFAULT_TIME_LIMIT_MILLIS;
+    private long nodeLimit = 0; // 0 for no limit
+    private long deadline;
+    // Set once the limits are exceeded, unwinds the current iteration without using its results
+    private volatile boolean aborted;
+    // The first iteration always completes so that there is a move to return
+    private volatile boolean canAbort;
+    private int completedDepth;
+    private Algorithm algorithm = Algorithm.ALPHA_BETA;
+    // Scores the leaves, null for the incrementally kept Constants.BOARD_WEIGHTS score
+    private Evaluator evaluator;
+    // Score and best line of the last root search, and score of the deepest completed iteration
+    private int rootScore;
+    private int[] rootLine = new int[0];
+    private int searchScore;
+    private int[] principalVariation = new int[0];
+
+    // Solves the root exactly once few enough squares are empty
+    private final EndgameSolver endgameSolver = new EndgameSolver();
+    private int endgameEmpties = DEFAULT_ENDGAME_EMPTIES;
+    private EndgameSolver.Mode endgameMode = EndgameSolver.Mode.EXACT;
+
+    // Searches on the calling thread, and holds the root position
+    private final Searcher searcher = new Searcher();
+    // Number of search threads, 1 searches everything on the calling thread
+    private int threads = 1;
+    private Parallelism parallelism = Parallelism.ROOT_SPLIT;
+    private ForkJoinPool pool;
+    // Searchers of the pool threads that are not searching right now
+    private final Queue<Searcher> idleSearchers = new ConcurrentLinkedQueue<>();
+    // Lazy SMP helpers of the current makeMove call, and the flag that stops them
+    private final List<ForkJoinTask<?>> helpers = new ArrayList<>();
+    private volatile boolean stopHelpers;
+
+    public Minimax() {
+        this(DEFAULT_TABLE_BYTES);
+    }
+
+    /**
+     * @param tableBytes memory budget of the transposition table in bytes
+     */
+    public Minimax(long tableBytes) {
+        table = new TranspositionTable(tableBytes);
+    }
+
+    /**
+     * @param maxDepth deepest iteration to search, at least 1
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 1 || maxDepth >= MAX_PLY) {
+            throw new IllegalArgumentException("Depth must be between 1 and " + (MAX_PLY - 1));
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * @param timeLimitMillis wall-clock budget of one makeMove call in milliseconds
+     */
+    public void setTimeLimitMillis(long timeLimitMillis) {
+        this.timeLimitMillis = timeLimitMillis;
+    }
+
+    /**
+     * @param nodeLimit maximum number of positions one makeMove call may visit, 0 for no limit.
+     * With more than one thread the limit may be overshot by a few thousand positions.
+     */
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * @param algorithm search algorithm used by makeMove
+     */
+    public void setAlgorithm(Algorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Replaces the weighted square evaluation of the leaves. The transposition table is cleared,
+     * since its scores came from the old evaluation.
+     * @param evaluator scores positions for the searching player, null for the default evaluation
+     */
+    public void setEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+        table.clear();
+    }
+
+    /**
+     * @param endgameEmpties largest number of empty squares at which the position is solved instead of searched,
+     * 0 to never solve
+     */
+    public void setEndgameEmpties(int endgameEmpties) {
+        this.endgameEmpties = endgameEmpties;
+    }
+
+    /**
+     * @param endgameMode whether the endgame solver finds the exact disc difference or only the game result
+     */
+    public void setEndgameMode(EndgameSolver.Mode endgameMode) {
+        this.endgameMode = endgameMode;
+    }
+
+    /**
+     * Sets how many threads search in parallel. With 1 thread, the default,
+     * everything is searched on the calling thread and the result is deterministic.
+     * @param threads number of search threads, at least 1
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed");
+        }
+        if (threads != this.threads) {
+            shutdown();
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Stops the search threads. They are only started by a parallel search, and a later one starts them again.
+     */
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+            idleSearchers.clear();
+        }
+    }
+
+    /**
+     * @param parallelism how the threads share the work when there is more than one
+     */
+    public void setParallelism(Parallelism parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Picks a move by iterative deepening: searches to depth 1, 2, ... until maxDepth
+     * or until the time or node budget runs out. The move of the deepest completed iteration is returned,
+     * and each iteration leaves its best moves in the transposition table to be tried first by the next.
+     * Near the end of the game the position is solved exactly instead, falling back to the search
+     * if the solver runs out of budget.
+     */
     @Override
     public BoardSpace makeMove(BoardSpace[][] board, Player p1) {
         // p1 is the maximizing player (computer player)
@@ -16,216 +221,742 @@ public class Minimax implements Strategy {
         // Create opponent for simulation purposes
         minimizingPlayer = createOpponent(p1);
 
+        if (tableColor != p1.getColor()) {
+            table.clear();
+            tableColor = p1.getColor();
+        }
+        table.newSearch();
+        searcher.newSearch();
+        for (Searcher helper : idleSearchers) {
+            helper.newSearch();
+        }
+        nodes.set(0);
+
         // Get available moves for maximizing player
-        Map<BoardSpace, List<BoardSpace>> availableMoves = maximizingPlayer.getAvailableMoves(board);
+        BitBoard position = BitBoard.fromBoard(board, maximizingPlayer.getColor());
+        searcher.setPosition(position);
+        long availableMoves = position.getLegalMoves();
 
         // If no moves available, return null immediately
-        if (availableMoves.isEmpty()) {
+        if (availableMoves == 0) {
+            principalVariation = new int[0];
             return null;
         }
 
-        // Create root node with the current board state
-        MiniNode root = new MiniNode(deepCopyBoard(board));
-
-        // Initialize best move and best score
-        BoardSpace bestMove = null;
-        int bestScore = Integer.MIN_VALUE;
+        deadline = System.nanoTime() + timeLimitMillis * 1_000_000;
+        aborted = false;
+        canAbort = false;
+        completedDepth = 0;
+        int bestMove = BitBoard.PASS;
+
+        int empties = position.countEmpty();
+        if (empties <= endgameEmpties) {
+            bestMove = endgameSolver.solve(position, endgameMode, deadline, nodeLimit);
+            nodes.addAndGet(endgameSolver.getNodeCount());
+            if (!endgameSolver.isAborted()) {
+                // The solver's score is a disc difference rather than an evaluation
+                searchScore = endgameSolver.getScore();
+                completedDepth = empties;
+                principalVariation = new int[] {bestMove};
+                return board[BitBoard.getX(bestMove)][BitBoard.getY(bestMove)];
+            }
+        }
 
-        // For each possible move, create a simulated board and add as a child to root
-        for (BoardSpace destination : availableMoves.keySet()) {
-            // Create a simulated board
-            BoardSpace[][] simulatedBoard = deepCopyBoard(board);
+        if (threads > 1 && parallelism == Parallelism.LAZY_SMP) {
+            startHelpers(position);
+        }
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            int move;
+            if (algorithm == Algorithm.PVS && depth > 1) {
+                move = aspirationSearch(depth, availableMoves, searchScore);
+            } else {
+                move = searchRoot(depth, availableMoves, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            }
+            if (aborted) {
+                break;
+            }
+            bestMove = move;
+            searchScore = rootScore;
+            completedDepth = depth;
+            principalVariation = rootLine;
+            canAbort = true;
+        }
+        stopHelpers();
+        searcher.flushNodes();
 
-            // Apply the move on the simulated board
-            simulateTakeSpaces(simulatedBoard, availableMoves, destination, maximizingPlayer.getColor());
+        return board[BitBoard.getX(bestMove)][BitBoard.getY(bestMove)];
+    }
 
-            // Create a child node for this move
-            MiniNode childNode = new MiniNode(simulatedBoard);
-            root.addNode(childNode);
+    /**
+     * Searches the root with a narrow window around the score of the previous iteration,
+     * widening the window on the failing side and searching again until the score falls inside it.
+     * @return the best move found, only meaningful if the search was not aborted
+     */
+    private int aspirationSearch(int depth, long availableMoves, int guess) {
+        long delta = ASPIRATION_WINDOW;
+        int alpha = (int) Math.max((long) guess - delta, Integer.MIN_VALUE);
+        int beta = (int) Math.min((long) guess + delta, Integer.MAX_VALUE);
+        while (true) {
+            int move = searchRoot(depth, availableMoves, alpha, beta);
+            if (aborted) {
+                return move;
+            }
+            delta *= 2;
+            if (rootScore <= alpha && alpha != Integer.MIN_VALUE) {
+                alpha = (int) Math.max((long) guess - delta, Integer.MIN_VALUE);
+            } else if (rootScore >= beta && beta != Integer.MAX_VALUE) {
+                beta = (int) Math.min((long) guess + delta, Integer.MAX_VALUE);
+            } else {
+                return move;
+            }
         }
+    }
 
-        // Now evaluate each child of the root using minimax with alpha-beta pruning
-        int alpha = Integer.MIN_VALUE;
-        int beta = Integer.MAX_VALUE;
+    /**
+     * Searches every move of the root position to the given depth.
+     * The score is left in rootScore, it is only a bound if it falls outside the window.
+     * @return the best move found, only meaningful if the search was not aborted
+     */
+    private int searchRoot(int depth, long availableMoves, int alpha, int beta) {
+        // Search the best move of the previous iteration first
+        long entry = table.probe(searcher.position.getKey());
+        int hashMove = entry != 0 ? TranspositionTable.moveOf(entry) : BitBoard.PASS;
+
+        int count = searcher.ordering.order(searcher.position, availableMoves, hashMove, 0, depth);
+        int[] moves = searcher.ordering.getMoves(0);
+        if (threads > 1 && parallelism == Parallelism.ROOT_SPLIT && count > 1) {
+            return searchRootParallel(depth, Arrays.copyOf(moves, count), alpha, beta);
+        }
 
-        for (int i = 0; i < root.getChildCount(); i++) {
-            MiniNode child = root.children.get(i);
-            int score = minimaxAlphaBeta(child, MAX_DEPTH - 1, alpha, beta, false);
+        int bestMove = searcher.searchRoot(depth, moves, count, alpha, beta);
+        rootScore = searcher.rootScore;
+        rootLine = searcher.rootLine;
+        return bestMove;
+    }
 
-            // Update best move if this score is better
-            if (score > bestScore) {
-                bestScore = score;
-                bestMove = getDestinationFromChildren(availableMoves, i);
+    /**
+     * Searches the root moves on the thread pool. The first move is searched alone on the calling thread,
+     * then the other moves are searched in parallel, each starting from the best score found so far.
+     * A move only replaces the best move if it was proven better than that score,
+     * ties between exact scores go to the move ordered first.
+     * @param moves the root moves, best first
+     * @return the best move found, only meaningful if the search was not aborted
+     */
+    private int searchRootParallel(int depth, int[] moves, int alpha, int beta) {
+        int alphaOrig = alpha;
+        BitBoard root = searcher.position;
+
+        // The first move is usually the best, its score bounds all the others
+        int firstScore = searcher.searchMove(moves[0], depth, alpha, beta, true);
+        if (aborted) {
+            return BitBoard.PASS;
+        }
+        RootResult best = new RootResult(moves[0], 0, firstScore, searcher.lineFrom(moves[0]));
+        AtomicInteger sharedAlpha = new AtomicInteger(Math.max(alpha, firstScore));
+
+        if (firstScore < beta) {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (int i = 1; i < moves.length; i++) {
+                int index = i;
+                tasks.add(ForkJoinTask.adapt(() -> searchRootMove(root, moves[index], index, depth,
+                        sharedAlpha, beta, best)));
             }
-
-            // Update alpha (best already explored option for maximizer)
-            alpha = Math.max(alpha, bestScore);
+            if (pool == null) {
+                pool = new ForkJoinPool(threads);
+            }
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
         }
 
-        return bestMove;
+        rootScore = best.score;
+        rootLine = best.line;
+        storeResult(root.getKey(), depth, best.score, alphaOrig, beta, best.move);
+        return best.move;
     }
 
     /**
-     * Helper method to get the corresponding destination BoardSpace from the list of available moves
-     * @param availableMoves The map of available moves
-     * @param index The index of the child in the root's children list
-     * @return The corresponding destination BoardSpace
+     * Searches one root move on a pool thread and records it in best if it beats the best move so far.
      */
-    private BoardSpace getDestinationFromChildren(Map<BoardSpace, List<BoardSpace>> availableMoves, int index) {
-        // Convert the keyset to a list to get by index
-        List<BoardSpace> destinations = new ArrayList<>(availableMoves.keySet());
-        if (index < destinations.size()) {
-            return destinations.get(index);
+    private void searchRootMove(BitBoard root, int square, int index, int depth,
+                                AtomicInteger sharedAlpha, int beta, RootResult best) {
+        int alpha = sharedAlpha.get();
+        if (alpha >= beta || aborted) {
+            return;
+        }
+        Searcher helper = idleSearchers.poll();
+        if (helper == null) {
+            helper = new Searcher();
+        }
+        try {
+            helper.setPosition(root);
+            int score = helper.searchMove(square, depth, alpha, beta, false);
+            if (aborted) {
+                return;
+            }
+            synchronized (best) {
+                // A score at or below alpha is only an upper bound, it can't tie with an exact score
+                if (score > best.score || (score == best.score && score > alpha && index < best.index)) {
+                    best.move = square;
+                    best.index = index;
+                    best.score = score;
+                    best.line = helper.lineFrom(square);
+                }
+            }
+            sharedAlpha.accumulateAndGet(score, Math::max);
+        } finally {
+            helper.flushNodes();
+            idleSearchers.offer(helper);
         }
-        return null;
     }
 
     /**
-     * The minimax algorithm implementation with alpha-beta pruning.
-     * Alpha is the best value that the maximizer currently can guarantee.
-     * Beta is the best value that the minimizer currently can guarantee.
-     * If alpha >= beta, we can prune the branch (stop exploring it).
+     * Starts threads - 1 Lazy SMP helpers on the pool. Each runs its own iterative deepening
+     * on the root position until stopHelpers is called, and only shares what it finds through
+     * the transposition table. Odd helpers search one ply deeper than their iteration,
+     * and every helper rotates the root moves after the first by its index, so that the helpers
+     * spread out over different parts of the tree instead of repeating the main search.
      */
-    private int minimaxAlphaBeta(MiniNode position, int depth, int alpha, int beta, boolean isMaximizingPlayer) {
-        // Base case: leaf node or maximum depth reached
-        if (depth == 0 || isGameOver(position.boardValue)) {
-            return evaluateBoard(position.boardValue);
+    private void startHelpers(BitBoard root) {
+        if (pool == null) {
+            pool = new ForkJoinPool(threads);
         }
+        stopHelpers = false;
+        BitBoard rootCopy = new BitBoard(root);
+        for (int i = 1; i < threads; i++) {
+            int index = i;
+            helpers.add(pool.submit(() -> runHelper(rootCopy, index)));
+        }
+    }
 
-        // Get the current player based on whether we're maximizing or minimizing
-        Player currentPlayer = isMaximizingPlayer ? maximizingPlayer : minimizingPlayer;
+    private void runHelper(BitBoard root, int index) {
+        Searcher helper = idleSearchers.poll();
+        if (helper == null) {
+            helper = new Searcher();
+        }
+        helper.helper = true;
+        try {
+            helper.setPosition(root);
+            long availableMoves = root.getLegalMoves();
+            for (int iteration = 1; iteration <= maxDepth && !helper.stopped(); iteration++) {
+                int depth = Math.min(iteration + (index & 1), maxDepth);
+                long entry = table.probe(root.getKey());
+                int hashMove = entry != 0 ? TranspositionTable.moveOf(entry) : BitBoard.PASS;
+                int count = helper.ordering.order(root, availableMoves, hashMove, 0, depth);
+                int[] moves = helper.ordering.getMoves(0);
+                rotate(moves, 1, count, index);
+                helper.searchRoot(depth, moves, count, Integer.MIN_VALUE, Integer.MAX_VALUE);
+            }
+        } finally {
+            helper.helper = false;
+            helper.flushNodes();
+            idleSearchers.offer(helper);
+        }
+    }
 
-        // Get available moves for current player
-        Map<BoardSpace, List<BoardSpace>> availableMoves = currentPlayer.getAvailableMoves(position.boardValue);
+    /**
+     * Rotates moves[from, to) left by distance places
+     */
+    private static void rotate(int[] moves, int from, int to, int distance) {
+        int length = to - from;
+        if (length < 2) {
+            return;
+        }
+        distance %= length;
+        for (int i = 0; i < distance; i++) {
+            int first = moves[from];
+            System.arraycopy(moves, from + 1, moves, from, length - 1);
+            moves[to - 1] = first;
+        }
+    }
 
-        // If no moves available, skip turn by switching player
-        if (availableMoves.isEmpty()) {
-            return minimaxAlphaBeta(position, depth - 1, alpha, beta, !isMaximizingPlayer);
+    /**
+     * Stops the Lazy SMP helpers and waits for them, so none of them is left touching the table
+     */
+    private void stopHelpers() {
+        stopHelpers = true;
+        for (ForkJoinTask<?> helper : helpers) {
+            helper.join();
         }
+        helpers.clear();
+    }
 
-        if (isMaximizingPlayer) {
-            int maxEval = Integer.MIN_VALUE;
+    /**
+     * Best move found so far by a parallel root search, shared by its tasks
+     */
+    private static class RootResult {
+        int move;
+        int index;
+        int score;
+        int[] line;
+
+        RootResult(int move, int index, int score, int[] line) {
+            this.move = move;
+            this.index = index;
+            this.score = score;
+            this.line = line;
+        }
+    }
 
-            // For each possible move, create a child node
-            for (BoardSpace destination : availableMoves.keySet()) {
-                // Create a simulated board
-                BoardSpace[][] simulatedBoard = deepCopyBoard(position.boardValue);
+    /**
+     * @return the best line found by the last makeMove call as bit indices, BitBoard.PASS for a pass
+     */
+    public int[] getPrincipalVariation() {
+        return principalVariation.clone();
+    }
 
-                // Apply the move on the simulated board
-                simulateTakeSpaces(simulatedBoard, availableMoves, destination, currentPlayer.getColor());
+    /**
+     * @return the score of the move picked by the last makeMove call, from its player's view.
+     * For a solved endgame this is the final disc difference instead of an evaluation.
+     */
+    public int getScore() {
+        return searchScore;
+    }
 
-                // Create a child node for this move
-                MiniNode childNode = new MiniNode(simulatedBoard);
-                position.addNode(childNode);
+    /**
+     * @return the number of positions visited by the last makeMove call
+     */
+    public long getNodeCount() {
+        return nodes.get();
+    }
 
-                // Recursively evaluate this child
-                int eval = minimaxAlphaBeta(childNode, depth - 1, alpha, beta, false);
-                maxEval = Math.max(maxEval, eval);
+    /**
+     * @return the depth of the deepest iteration completed by the last makeMove call,
+     * or the number of empty squares if the endgame was solved
+     */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
 
-                // Update alpha
-                alpha = Math.max(alpha, eval);
+    /**
+     * @return the number of alpha or beta cutoffs in the last makeMove call
+     */
+    public long getCutoffCount() {
+        long cutoffs = searcher.ordering.getCutoffCount();
+        for (Searcher helper : idleSearchers) {
+            cutoffs += helper.ordering.getCutoffCount();
+        }
+        return cutoffs;
+    }
 
-                // Alpha-beta pruning
-                if (beta <= alpha) {
-                    break; // Beta cutoff
-                }
-            }
+    /**
+     * @return the fraction of cutoffs in the last makeMove call that were caused by the first move tried,
+     * a measure of how well the moves were ordered
+     */
+    public double getFirstMoveCutoffRate() {
+        long firstMoveCutoffs = searcher.ordering.getFirstMoveCutoffCount();
+        for (Searcher helper : idleSearchers) {
+            firstMoveCutoffs += helper.ordering.getFirstMoveCutoffCount();
+        }
+        long cutoffs = getCutoffCount();
+        return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+    }
 
-            return maxEval;
+    /**
+     * Stores a search result with the bound type implied by the window it was searched with.
+     * A score at or below the original alpha is an upper bound, at or above the original beta a lower bound.
+     */
+    private void storeResult(long key, int depth, int score, int alphaOrig, int betaOrig, int bestMove) {
+        int bound;
+        if (score <= alphaOrig) {
+            bound = TranspositionTable.UPPER_BOUND;
+        } else if (score >= betaOrig) {
+            bound = TranspositionTable.LOWER_BOUND;
         } else {
-            int minEval = Integer.MAX_VALUE;
+            bound = TranspositionTable.EXACT;
+        }
+        table.store(key, depth, bound, score, bestMove);
+    }
 
-            // For each possible move, create a child node
-            for (BoardSpace destination : availableMoves.keySet()) {
-                // Create a simulated board
-                BoardSpace[][] simulatedBoard = deepCopyBoard(position.boardValue);
+    /**
+     * The search state of one thread: the position it searches in place, its move and principal
+     * variation stacks and its move ordering tables. The transposition table and the limits are shared.
+     */
+    private class Searcher {
+        // The single position being searched, moves are made and unmade on it in place
+        private final BitBoard position = new BitBoard(0, 0, BoardSpace.SpaceType.BLACK);
+        // Move history stack, holds the move and flipped discs of every ply so they can be unmade
+        private final int[] moveStack = new int[MAX_PLY];
+        private final long[] flipStack = new long[MAX_PLY];
+        private int ply;
+
+        // Weighted square score of the position (black minus white), updated by make and restored by unmake
+        private int weightScore;
+        private final int[] weightStack = new int[MAX_PLY];
+
+        // Triangular principal variation table, pv[p] holds the best line found from ply p onward
+        private final int[][] pv = new int[MAX_PLY][MAX_PLY];
+        private final int[] pvLength = new int[MAX_PLY];
+
+        // Sorts the moves of every node, its killer and history tables are kept between makeMove calls
+        private final MoveOrdering ordering = new MoveOrdering(MAX_PLY);
+
+        // Nodes searched by this searcher, and how many of them were already added to the shared count
+        private long nodes;
+        private long publishedNodes;
+        // Set while this searcher runs as a Lazy SMP helper, which also stops when the helpers are stopped
+        private boolean helper;
+        // Score and best line of the last searchRoot call
+        private int rootScore;
+        private int[] rootLine = new int[0];
+
+        void newSearch() {
+            ordering.newSearch();
+            nodes = 0;
+            publishedNodes = 0;
+        }
 
-                // Apply the move on the simulated board
-                simulateTakeSpaces(simulatedBoard, availableMoves, destination, currentPlayer.getColor());
+        void setPosition(BitBoard root) {
+            position.copyFrom(root);
+            ply = 0;
+            weightScore = sumWeights(root.getBlack()) - sumWeights(root.getWhite());
+        }
 
-                // Create a child node for this move
-                MiniNode childNode = new MiniNode(simulatedBoard);
-                position.addNode(childNode);
+        /**
+         * Evaluates the searched position in constant time from its incrementally kept weighted square score,
+         * or with the evaluator if one is set
+         * @return the same score as evaluate(position)
+         */
+        private int evaluateLeaf() {
+            if (evaluator != null) {
+                return evaluator.evaluate(position.getDiscs(maximizingPlayer.getColor()),
+                        position.getDiscs(minimizingPlayer.getColor()));
+            }
+            return maximizingPlayer.getColor() == BoardSpace.SpaceType.BLACK ? weightScore : -weightScore;
+        }
 
-                // Recursively evaluate this child
-                int eval = minimaxAlphaBeta(childNode, depth - 1, alpha, beta, true);
-                minEval = Math.min(minEval, eval);
+        /**
+         * Searches every move of the root position to the given depth.
+         * The score is left in rootScore, it is only a bound if it falls outside the window.
+         * @param moves the root moves, best first
+         * @return the best move found, only meaningful if the search was not stopped
+         */
+        int searchRoot(int depth, int[] moves, int count, int alpha, int beta) {
+            // Initialize best move and best score
+            int bestMove = BitBoard.PASS;
+            int bestScore = Integer.MIN_VALUE;
+            int alphaOrig = alpha;
+            int betaOrig = beta;
+
+            for (int i = 0; i < count; i++) {
+                int square = moves[i];
+
+                // Apply the move on the position, search it, then take it back
+                int score = searchMove(square, depth, alpha, beta, i == 0);
+                if (stopped()) {
+                    return bestMove;
+                }
+
+                // Update best move if this score is better
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestMove = square;
+                    rootLine = lineFrom(square);
+                }
 
-                // Update beta
-                beta = Math.min(beta, eval);
+                // Update alpha (best already explored option for maximizer)
+                alpha = Math.max(alpha, bestScore);
 
-                // Alpha-beta pruning
+                // Only possible with an aspiration window, the score is above it
                 if (beta <= alpha) {
-                    break; // Alpha cutoff
+                    break;
                 }
             }
 
-            return minEval;
+            rootScore = bestScore;
+            storeResult(position.getKey(), depth, bestScore, alphaOrig, betaOrig, bestMove);
+            return bestMove;
         }
-    }
 
-    /**
-     * Original minimax method without alpha-beta pruning (kept for reference or testing)
-     */
-    private int minimax(MiniNode position, int depth, boolean isMaximizingPlayer) {
-        // Base case: leaf node or maximum depth reached
-        if (depth == 0 || isGameOver(position.boardValue)) {
-            return evaluateBoard(position.boardValue);
+        /**
+         * Plays a root move, searches it and takes it back.
+         * @param first whether this is the first root move, which PVS searches with the full window
+         * @return the score of the move, a bound if it falls outside the window
+         */
+        int searchMove(int square, int depth, int alpha, int beta, boolean first) {
+            make(square);
+            int score = searchChild(depth - 1, alpha, beta, first, true);
+            unmake();
+            return score;
         }
 
-        // Get the current player based on whether we're maximizing or minimizing
-        Player currentPlayer = isMaximizingPlayer ? maximizingPlayer : minimizingPlayer;
+        /**
+         * @return the root move followed by the best line found by the last searchMove call
+         */
+        int[] lineFrom(int square) {
+            int[] line = new int[Math.max(pvLength[1], 1)];
+            line[0] = square;
+            System.arraycopy(pv[1], 1, line, 1, line.length - 1);
+            return line;
+        }
 
-        // Get available moves for current player
-        Map<BoardSpace, List<BoardSpace>> availableMoves = currentPlayer.getAvailableMoves(position.boardValue);
+        /**
+         * Adds the nodes searched since the last call to the shared count
+         */
+        void flushNodes() {
+            Minimax.this.nodes.addAndGet(nodes - publishedNodes);
+            publishedNodes = nodes;
+        }
 
-        // If no moves available, skip turn by switching player
-        if (availableMoves.isEmpty()) {
-            return minimax(position, depth - 1, !isMaximizingPlayer);
+        /**
+         * @return true if the search has to unwind, because the budget ran out or the helpers were stopped
+         */
+        boolean stopped() {
+            return aborted || (helper && stopHelpers);
         }
 
-        if (isMaximizingPlayer) {
-            int maxEval = Integer.MIN_VALUE;
+        /**
+         * Checks the node budget on every node and the clock every CLOCK_CHECK_INTERVAL nodes.
+         * @return true if the current iteration has to be abandoned
+         */
+        private boolean outOfBudget() {
+            if (nodes - publishedNodes >= CLOCK_CHECK_INTERVAL) {
+                flushNodes();
+                if (canAbort && System.nanoTime() >= deadline) {
+                    aborted = true;
+                }
+            }
+            if (canAbort && nodeLimit > 0 && Minimax.this.nodes.get() + nodes - publishedNodes >= nodeLimit) {
+                aborted = true;
+            }
+            return stopped();
+        }
 
-            // For each possible move, create a child node
-            for (BoardSpace destination : availableMoves.keySet()) {
-                // Create a simulated board
-                BoardSpace[][] simulatedBoard = deepCopyBoard(position.boardValue);
+        /**
+         * Searches the child position that was just made.
+         * With PVS every child after the first is expected to be worse than the best move so far,
+         * so it is searched with a zero-width window that only proves this, and searched again
+         * with the full window if it turns out better.
+         */
+        private int searchChild(int depth, int alpha, int beta, boolean first, boolean maximizing) {
+            if (first || algorithm != Algorithm.PVS) {
+                return minimaxAlphaBeta(depth, alpha, beta);
+            }
+            int eval = maximizing
+                    ? minimaxAlphaBeta(depth, alpha, alpha + 1)
+                    : minimaxAlphaBeta(depth, beta - 1, beta);
+            if (eval > alpha && eval < beta && !stopped()) {
+                eval = minimaxAlphaBeta(depth, alpha, beta);
+            }
+            return eval;
+        }
 
-                // Apply the move on the simulated board
-                simulateTakeSpaces(simulatedBoard, availableMoves, destination, currentPlayer.getColor());
+        /**
+         * The minimax algorithm implementation with alpha-beta pruning.
+         * Alpha is the best value that the maximizer currently can guarantee.
+         * Beta is the best value that the minimizer currently can guarantee.
+         * If alpha >= beta, we can prune the branch (stop exploring it).
+         * Searches the position in place, whether this is a maximizing node follows from its side to move.
+         * Results are stored in the transposition table and reused when the position is reached again.
+         */
+        private int minimaxAlphaBeta(int depth, int alpha, int beta) {
+            pvLength[ply] = ply;
+            nodes++;
+            if (outOfBudget()) {
+                return 0;
+            }
 
-                // Create a child node for this move
-                MiniNode childNode = new MiniNode(simulatedBoard);
-                position.addNode(childNode);
+            // Base case: maximum depth reached, or a full board which needs no move generation to see the game is over
+            if (depth == 0 || position.getEmpty() == 0) {
+                return evaluateLeaf();
+            }
 
-                // Recursively evaluate this child
-                int eval = minimax(childNode, depth - 1, false);
-                maxEval = Math.max(maxEval, eval);
+            // Reuse an earlier search of this position that went at least as deep
+            long key = position.getKey();
+            long entry = table.probe(key);
+            int hashMove = BitBoard.PASS;
+            if (entry != 0) {
+                hashMove = TranspositionTable.moveOf(entry);
+                if (TranspositionTable.depthOf(entry) >= depth) {
+                    int score = TranspositionTable.scoreOf(entry);
+                    int bound = TranspositionTable.boundOf(entry);
+                    if (bound == TranspositionTable.EXACT) {
+                        return score;
+                    } else if (bound == TranspositionTable.LOWER_BOUND) {
+                        alpha = Math.max(alpha, score);
+                    } else {
+                        beta = Math.min(beta, score);
+                    }
+                    if (alpha >= beta) {
+                        return score;
+                    }
+                }
             }
+            int alphaOrig = alpha;
+            int betaOrig = beta;
 
-            return maxEval;
-        } else {
-            int minEval = Integer.MAX_VALUE;
+            boolean isMaximizingPlayer = position.getSideToMove() == maximizingPlayer.getColor();
 
-            // For each possible move, create a child node
-            for (BoardSpace destination : availableMoves.keySet()) {
-                // Create a simulated board
-                BoardSpace[][] simulatedBoard = deepCopyBoard(position.boardValue);
+            // Get available moves for current player
+            long availableMoves = position.getLegalMoves();
 
-                // Apply the move on the simulated board
-                simulateTakeSpaces(simulatedBoard, availableMoves, destination, currentPlayer.getColor());
+            // If no moves available, skip turn by switching player, unless the opponent can't move either
+            if (availableMoves == 0) {
+                if (BitBoard.legalMoves(position.getOpponent(), position.getPlayer()) == 0) {
+                    return evaluateLeaf();
+                }
+                make(BitBoard.PASS);
+                int eval = minimaxAlphaBeta(depth - 1, alpha, beta);
+                unmake();
+                if (stopped()) {
+                    return 0;
+                }
+                updatePv(BitBoard.PASS);
+                storeResult(key, depth, eval, alphaOrig, betaOrig, BitBoard.PASS);
+                return eval;
+            }
+
+            // Try the best move of an earlier search first, then killers, then the rest by history and mobility
+            int count = ordering.order(position, availableMoves, hashMove, ply, depth);
+            int[] moves = ordering.getMoves(ply);
+            int bestMove = moves[0];
+
+            if (isMaximizingPlayer) {
+                int maxEval = Integer.MIN_VALUE;
+
+                // For each possible move, play it on the position
+                for (int i = 0; i < count; i++) {
+                    int square = moves[i];
 
-                // Create a child node for this move
-                MiniNode childNode = new MiniNode(simulatedBoard);
-                position.addNode(childNode);
+                    // Recursively evaluate this child
+                    make(square);
+                    int eval = searchChild(depth - 1, alpha, beta, i == 0, true);
+                    unmake();
+                    if (stopped()) {
+                        return 0;
+                    }
+                    if (eval > maxEval) {
+                        maxEval = eval;
+                        bestMove = square;
+                        updatePv(square);
+                    }
+
+                    // Update alpha
+                    alpha = Math.max(alpha, eval);
+
+                    // Alpha-beta pruning
+                    if (beta <= alpha) {
+                        ordering.recordCutoff(position, ply, square, depth, i);
+                        break; // Beta cutoff
+                    }
+                }
+
+                storeResult(key, depth, maxEval, alphaOrig, betaOrig, bestMove);
+                return maxEval;
+            } else {
+                int minEval = Integer.MAX_VALUE;
+
+                // For each possible move, play it on the position
+                for (int i = 0; i < count; i++) {
+                    int square = moves[i];
+
+                    // Recursively evaluate this child
+                    make(square);
+                    int eval = searchChild(depth - 1, alpha, beta, i == 0, false);
+                    unmake();
+                    if (stopped()) {
+                        return 0;
+                    }
+                    if (eval < minEval) {
+                        minEval = eval;
+                        bestMove = square;
+                        updatePv(square);
+                    }
+
+                    // Update beta
+                    beta = Math.min(beta, eval);
+
+                    // Alpha-beta pruning
+                    if (beta <= alpha) {
+                        ordering.recordCutoff(position, ply, square, depth, i);
+                        break; // Alpha cutoff
+                    }
+                }
+
+                storeResult(key, depth, minEval, alphaOrig, betaOrig, bestMove);
+                return minEval;
+            }
+        }
+
+        /**
+         * Original minimax method without alpha-beta pruning (kept for reference or testing)
+         */
+        private int minimax(int depth) {
+            // Base case: leaf node or maximum depth reached
+            if (depth == 0 || position.getEmpty() == 0) {
+                return evaluateLeaf();
+            }
+
+            boolean isMaximizingPlayer = position.getSideToMove() == maximizingPlayer.getColor();
+
+            // Get available moves for current player
+            long availableMoves = position.getLegalMoves();
+
+            // If no moves available, skip turn by switching player, unless the game is over
+            if (availableMoves == 0) {
+                if (BitBoard.legalMoves(position.getOpponent(), position.getPlayer()) == 0) {
+                    return evaluateLeaf();
+                }
+                make(BitBoard.PASS);
+                int eval = minimax(depth - 1);
+                unmake();
+                return eval;
+            }
+
+            int bestEval = isMaximizingPlayer ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+            while (availableMoves != 0) {
+                int square = Long.numberOfTrailingZeros(availableMoves);
+                availableMoves &= availableMoves - 1;
 
                 // Recursively evaluate this child
-                int eval = minimax(childNode, depth - 1, true);
-                minEval = Math.min(minEval, eval);
+                make(square);
+                int eval = minimax(depth - 1);
+                unmake();
+                bestEval = isMaximizingPlayer ? Math.max(bestEval, eval) : Math.min(bestEval, eval);
             }
+            return bestEval;
+        }
 
-            return minEval;
+        /**
+         * Plays a move (or a pass) on the searched position and pushes it onto the move history stack
+         */
+        private void make(int square) {
+            moveStack[ply] = square;
+            weightStack[ply] = weightScore;
+            if (square == BitBoard.PASS) {
+                position.pass();
+                flipStack[ply] = 0;
+            } else {
+                boolean blackMoves = position.getSideToMove() == BoardSpace.SpaceType.BLACK;
+                long flipped = position.play(square);
+                flipStack[ply] = flipped;
+                // The new disc is gained, every flipped disc is gained by the mover and lost by the opponent
+                int gain = Constants.BOARD_WEIGHTS[BitBoard.getX(square)][BitBoard.getY(square)]
+                        + 2 * sumWeights(flipped);
+                weightScore += blackMoves ? gain : -gain;
+            }
+            ply++;
+        }
+
+        /**
+         * Pops the last move off the move history stack and restores the position from its flipped discs
+         */
+        private void unmake() {
+            ply--;
+            weightScore = weightStack[ply];
+            if (moveStack[ply] == BitBoard.PASS) {
+                position.pass();
+            } else {
+                position.undo(moveStack[ply], flipStack[ply]);
+            }
+        }
+
+        /**
+         * Records square as the best move at the current ply, followed by the best line of the child
+         */
+        private void updatePv(int square) {
+            pv[ply][ply] = square;
+            int childLength = pvLength[ply + 1];
+            System.arraycopy(pv[ply + 1], ply + 1, pv[ply], ply + 1, childLength - ply - 1);
+            pvLength[ply] = Math.max(childLength, ply + 1);
         }
     }
 
@@ -234,49 +965,63 @@ public class Minimax implements Strategy {
     }
 
     /**
-     * Evaluates a board state by summing the weighted positions for each player
-     * and returning the difference (maximizer - minimizer)
+     * Makes the given moves from position and then unmakes them all, comparing the incrementally kept
+     * weighted square score with a full evaluation after every step. makeMove must have been called first
+     * so that the players are known, and no evaluator may be set.
+     * @param moves squares to play in order, BitBoard.PASS for a pass
+     * @return the number of steps at which the two scores differed
      */
-    public int evaluateBoard(BoardSpace[][] board) {
-        int maximizerScore = 0;
-        int minimizerScore = 0;
-
-        // Sum up the weights of all spaces for each player
-        for (int i = 0; i < board.length; i++) {
-            for (int j = 0; j < board[i].length; j++) {
-                if (board[i][j].getType() == maximizingPlayer.getColor()) {
-                    maximizerScore += Constants.BOARD_WEIGHTS[i][j];
-                } else if (board[i][j].getType() == minimizingPlayer.getColor()) {
-                    minimizerScore += Constants.BOARD_WEIGHTS[i][j];
-                }
+    public int testIncrementalEvaluation(BitBoard position, int[] moves) {
+        searcher.setPosition(position);
+        int mismatches = 0;
+        for (int move : moves) {
+            searcher.make(move);
+            if (searcher.evaluateLeaf() != evaluate(searcher.position)) {
+                mismatches++;
             }
         }
+        for (int i = 0; i < moves.length; i++) {
+            searcher.unmake();
+            if (searcher.evaluateLeaf() != evaluate(searcher.position)) {
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
 
-        // Return the difference (maximizer - minimizer)
-        return maximizerScore - minimizerScore;
+    /**
+     * Evaluates a board state by summing the weighted positions for each player
+     * and returning the difference (maximizer - minimizer)
+     */
+    public int evaluateBoard(BoardSpace[][] board) {
+        return evaluate(BitBoard.fromBoard(board, maximizingPlayer.getColor()));
     }
 
     /**
-     * Checks if the game is over by seeing if either player can make a move
+     * Evaluates a BitBoard by summing the weighted positions for each player
+     * and returning the difference (maximizer - minimizer), or with the evaluator if one is set
      */
-    private boolean isGameOver(BoardSpace[][] board) {
-        Map<BoardSpace, List<BoardSpace>> maxMoves = maximizingPlayer.getAvailableMoves(board);
-        Map<BoardSpace, List<BoardSpace>> minMoves = minimizingPlayer.getAvailableMoves(board);
+    private int evaluate(BitBoard board) {
+        if (evaluator != null) {
+            return evaluator.evaluate(board.getDiscs(maximizingPlayer.getColor()),
+                    board.getDiscs(minimizingPlayer.getColor()));
+        }
+        int maximizerScore = sumWeights(board.getDiscs(maximizingPlayer.getColor()));
+        int minimizerScore = sumWeights(board.getDiscs(minimizingPlayer.getColor()));
 
-        return maxMoves.isEmpty() && minMoves.isEmpty();
+        // Return the difference (maximizer - minimizer)
+        return maximizerScore - minimizerScore;
     }
 
     /**
-     * Creates a deep copy of the board for simulation
+     * Sums the weights of every square in a mask, one table lookup per row
      */
-    private BoardSpace[][] deepCopyBoard(BoardSpace[][] original) {
-        BoardSpace[][] copy = new BoardSpace[original.length][original[0].length];
-        for (int i = 0; i < original.length; i++) {
-            for (int j = 0; j < original[i].length; j++) {
-                copy[i][j] = new BoardSpace(original[i][j]); // Using the copy constructor
-            }
+    static int sumWeights(long discs) {
+        int score = 0;
+        for (int y = 0; y < BitBoard.BOARD_SIZE; y++) {
+            score += ROW_WEIGHTS[y][(int) (discs >>> (y * BitBoard.BOARD_SIZE)) & 0xFF];
         }
-        return copy;
+        return score;
     }
 
     /**
@@ -294,84 +1039,4 @@ public class Minimax implements Strategy {
 
         return opponent;
     }
-
-    /**
-     * Simulates taking spaces on a copied board (doesn't affect the original game board)
-     */
-    private void simulateTakeSpaces(BoardSpace[][] simulatedBoard,
-                                    Map<BoardSpace, List<BoardSpace>> availableMoves,
-                                    BoardSpace selectedDestination,
-                                    BoardSpace.SpaceType playerColor) {
-        // First, set the destination to the player's color
-        simulatedBoard[selectedDestination.getX()][selectedDestination.getY()].setType(playerColor);
-
-        List<BoardSpace> origins = availableMoves.get(selectedDestination);
-        for (BoardSpace origin : origins) {
-            if (origin.getX() == selectedDestination.getX()) {
-                // These two are in same column
-                int direction = origin.getY() - selectedDestination.getY();
-                if (direction > 0) {
-                    // Origin must travel negative y direction
-                    for (int y = origin.getY(); y > selectedDestination.getY(); --y) {
-                        simulatedBoard[origin.getX()][y].setType(playerColor);
-                    }
-                } else {
-                    // Origin must travel positive y direction
-                    for (int y = origin.getY(); y < selectedDestination.getY(); ++y) {
-                        simulatedBoard[origin.getX()][y].setType(playerColor);
-                    }
-                }
-                continue;
-            }
-
-            if (origin.getY() == selectedDestination.getY()) {
-                // These two are in same row
-                int direction = origin.getX() - selectedDestination.getX();
-                if (direction > 0) {
-                    // Origin must travel negative x direction
-                    for (int x = origin.getX(); x > selectedDestination.getX(); --x) {
-                        simulatedBoard[x][origin.getY()].setType(playerColor);
-                    }
-                } else {
-                    // Origin must travel positive x direction
-                    for (int x = origin.getX(); x < selectedDestination.getX(); ++x) {
-                        simulatedBoard[x][origin.getY()].setType(playerColor);
-                    }
-                }
-                continue;
-            }
-
-            if (origin.getX() > selectedDestination.getX()) {
-                // These two are diagonally oriented from each other
-                int direction = origin.getY() - selectedDestination.getY();
-                if (direction > 0) {
-                    // Origin must travel negative x and y direction
-                    for (int xy = 0; xy < direction; ++xy) {
-                        simulatedBoard[origin.getX() - xy][origin.getY() - xy].setType(playerColor);
-                    }
-                } else {
-                    // Origin must travel negative x and positive y direction
-                    for (int xy = 0; xy < -direction; ++xy) {
-                        simulatedBoard[origin.getX() - xy][origin.getY() + xy].setType(playerColor);
-                    }
-                }
-                continue;
-            }
-            if (origin.getX() < selectedDestination.getX()) {
-                // These two are diagonally oriented from each other
-                int direction = origin.getY() - selectedDestination.getY();
-                if (direction > 0) {
-                    // Origin must travel positive x and negative y direction
-                    for (int xy = 0; xy < direction; ++xy) {
-                        simulatedBoard[origin.getX() + xy][origin.getY() - xy].setType(playerColor);
-                    }
-                } else {
-                    // Origin must travel positive x and positive y direction
-                    for (int xy = 0; xy < -direction; ++xy) {
-                        simulatedBoard[origin.getX() + xy][origin.getY() + xy].setType(playerColor);
-                    }
-                }
-            }
-        }
-    }
-}
\ No newline at end of file
+}
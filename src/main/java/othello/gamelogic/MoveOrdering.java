@@ -0,0 +1,171 @@
+package othello.gamelogic;
+
+/**
+ * Orders the moves of a search node so that alpha-beta finds cutoffs as early as possible.
+ * Moves are tried in this order: the best move stored in the transposition table, the two killer moves
+ * of the ply (moves that recently caused a cutoff at the same ply), then the rest by their history score
+ * (how often they caused cutoffs anywhere) minus a penalty for the number of moves left to the opponent.
+ * All buffers are allocated once per instance, one instance is needed per searching thread.
+ */
+public class MoveOrdering {
+    // More than the most legal moves an Othello position can have
+    private static final int MAX_MOVES = 64;
+    private static final int HASH_MOVE_SCORE = Integer.MAX_VALUE;
+    private static final int KILLER_SCORE = Integer.MAX_VALUE - 2;
+    // Weight of one opponent move against the history score
+    private static final int MOBILITY_WEIGHT = 1 << 8;
+    // History scores are capped well below the killer scores
+    private static final int HISTORY_LIMIT = 1 << 24;
+    // Closer to the leaves counting the opponent's replies costs more than the better order saves
+    private static final int MOBILITY_MIN_DEPTH = 3;
+
+    private final int[][] moves;
+    private final int[][] scores;
+    private final int[][] killers;
+    // history[color][square], color 0 for black and 1 for white
+    private final int[][] history = new int[2][BitBoard.NUM_SQUARES];
+
+    // Ordering statistics of the current search
+    private long cutoffs;
+    private long firstMoveCutoffs;
+
+    /**
+     * @param maxPly deepest ply that will be ordered
+     */
+    public MoveOrdering(int maxPly) {
+        moves = new int[maxPly][MAX_MOVES];
+        scores = new int[maxPly][MAX_MOVES];
+        killers = new int[maxPly][2];
+        clearKillers();
+    }
+
+    /**
+     * Prepares for a new search: forgets killers and statistics, and halves the history scores
+     * so that moves which were good earlier in the game slowly lose their priority.
+     */
+    public void newSearch() {
+        clearKillers();
+        for (int[] colorHistory : history) {
+            for (int i = 0; i < colorHistory.length; i++) {
+                colorHistory[i] >>= 1;
+            }
+        }
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
+    }
+
+    private void clearKillers() {
+        for (int[] plyKillers : killers) {
+            plyKillers[0] = BitBoard.PASS;
+            plyKillers[1] = BitBoard.PASS;
+        }
+    }
+
+    /**
+     * Sorts the legal moves of a position into the move buffer of a ply.
+     * @param position the position the moves are played from
+     * @param legalMoves mask of the legal moves of position
+     * @param hashMove best move from the transposition table, BitBoard.PASS for none
+     * @param ply ply of the position in the search
+     * @param depth remaining depth of the position
+     * @return the number of moves, read them from getMoves(ply)
+     */
+    public int order(BitBoard position, long legalMoves, int hashMove, int ply, int depth) {
+        int[] plyMoves = moves[ply];
+        int[] plyScores = scores[ply];
+        int[] plyKillers = killers[ply];
+        int[] colorHistory = history[colorIndex(position.getSideToMove())];
+        long player = position.getPlayer();
+        long opponent = position.getOpponent();
+        boolean useMobility = depth >= MOBILITY_MIN_DEPTH;
+
+        int count = 0;
+        while (legalMoves != 0) {
+            int square = Long.numberOfTrailingZeros(legalMoves);
+            legalMoves &= legalMoves - 1;
+
+            int score;
+            if (square == hashMove) {
+                score = HASH_MOVE_SCORE;
+            } else if (square == plyKillers[0]) {
+                score = KILLER_SCORE;
+            } else if (square == plyKillers[1]) {
+                score = KILLER_SCORE - 1;
+            } else if (!useMobility) {
+                score = colorHistory[square];
+            } else {
+                // count the replies the opponent would have after this move
+                long flipped = BitBoard.flips(player, opponent, square);
+                long newPlayer = player | flipped | (1L << square);
+                long newOpponent = opponent & ~flipped;
+                int mobility = Long.bitCount(BitBoard.legalMoves(newOpponent, newPlayer));
+                score = colorHistory[square] - mobility * MOBILITY_WEIGHT;
+            }
+
+            // insertion sort, highest score first
+            int i = count++;
+            while (i > 0 && plyScores[i - 1] < score) {
+                plyMoves[i] = plyMoves[i - 1];
+                plyScores[i] = plyScores[i - 1];
+                i--;
+            }
+            plyMoves[i] = square;
+            plyScores[i] = score;
+        }
+        return count;
+    }
+
+    /**
+     * @return the move buffer filled by the last order call for this ply
+     */
+    public int[] getMoves(int ply) {
+        return moves[ply];
+    }
+
+    /**
+     * Records a move that caused a cutoff, making it a killer of its ply and raising its history score.
+     * @param position the position the move was played from
+     * @param ply ply of the position in the search
+     * @param square the move that caused the cutoff
+     * @param depth remaining depth of the position, deeper cutoffs count more
+     * @param moveIndex index of the move in the ordered list
+     */
+    public void recordCutoff(BitBoard position, int ply, int square, int depth, int moveIndex) {
+        cutoffs++;
+        if (moveIndex == 0) {
+            firstMoveCutoffs++;
+        }
+        int[] plyKillers = killers[ply];
+        if (plyKillers[0] != square) {
+            plyKillers[1] = plyKillers[0];
+            plyKillers[0] = square;
+        }
+        int[] colorHistory = history[colorIndex(position.getSideToMove())];
+        colorHistory[square] = Math.min(colorHistory[square] + depth * depth, HISTORY_LIMIT);
+    }
+
+    /**
+     * @return the number of cutoffs recorded since the last newSearch call
+     */
+    public long getCutoffCount() {
+        return cutoffs;
+    }
+
+    /**
+     * @return the number of cutoffs caused by the first move tried since the last newSearch call
+     */
+    public long getFirstMoveCutoffCount() {
+        return firstMoveCutoffs;
+    }
+
+    /**
+     * @return the fraction of cutoffs caused by the first move tried, 0 if there were none
+     */
+    public double getFirstMoveCutoffRate() {
+        return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+    }
+
+    private static int colorIndex(BoardSpace.SpaceType color) {
+        return color == BoardSpace.SpaceType.BLACK ? 0 : 1;
+    }
+}
@@ -41,6 +41,15 @@ public class OthelloGame {
         return player.getAvailableMoves(board);
     }
 
+    /**
+     * Returns a compact copy of the current board for the search engines.
+     * @param toMove player whose turn it is
+     * @return a BitBoard with the same discs as the board, with toMove as the side to move
+     */
+    public BitBoard getBitBoard(Player toMove) {
+        return BitBoard.fromBoard(board, toMove.getColor());
+    }
+
     /**
      * Initializes the board at the start of the game with all EMPTY spaces.
      */
@@ -84,6 +93,8 @@ public class OthelloGame {
      * PART 1
      * Claims spaces from all origins that lead to a specified destination.
      * This is called when a player, human or computer, selects a valid destination.
+     * The flipped spaces are computed from the board itself, so the map is only kept for
+     * callers that already hold one.
      * @param actingPlayer the player that will claim spaces
      * @param opponent the opposing player, that may lose spaces
      * @param availableMoves map of the available moves, that maps destination to list of origins
@@ -92,74 +103,30 @@ public class OthelloGame {
     public void takeSpaces(Player actingPlayer, Player opponent,
                            Map<BoardSpace, List<BoardSpace>> availableMoves,
                            BoardSpace selectedDestination) {
-        List<BoardSpace> origins = availableMoves.get(selectedDestination);
-        for (BoardSpace origin : origins) {
-            if (origin.getX() == selectedDestination.getX()) {
-                //these two are in same column;
-                int direction = origin.getY() - selectedDestination.getY();
-                if (direction > 0) {
-                    //origin must travel negative y direction
-                    for (int y = origin.getY(); y >= selectedDestination.getY(); --y) {
-                        takeSpace(actingPlayer, opponent, origin.getX(), y);
-                    }
-                } else {
-                    //origin must travel positive y direction
-                    for (int y = origin.getY(); y <= selectedDestination.getY(); ++y) {
-                        takeSpace(actingPlayer, opponent, origin.getX(), y);
-                    }
-                }
-                continue;
-            }
-
-            if (origin.getY() == selectedDestination.getY()) {
-                //these two are in same row;
-                int direction = origin.getX() - selectedDestination.getX();
-                if (direction > 0) {
-                    //origin must travel negative x direction
-                    for (int x = origin.getX(); x >= selectedDestination.getX(); --x) {
-                        takeSpace(actingPlayer, opponent, x, origin.getY());
-                    }
-                } else {
-                    //origin must travel positive x direction
-                    for (int x = origin.getX(); x <= selectedDestination.getX(); ++x) {
-                        takeSpace(actingPlayer, opponent, x, origin.getY());
-                    }
-                }
-                continue;
-            }
+        takeSpaces(actingPlayer, opponent, selectedDestination);
+    }
 
-            if (origin.getX() > selectedDestination.getX()) {
-                //these two are diagonally oriented from each other
-                int direction = origin.getY() - selectedDestination.getY();
-                if (direction > 0) {
-                    //origin must travel negative x and y direction
-                    for (int xy = 0; xy <= direction; ++xy) {
-
-                        takeSpace(actingPlayer, opponent, origin.getX() - xy, origin.getY() - xy);
-                    }
-                } else {
-                    //origin must travel negative x and positive y direction
-                    for (int xy = 0; xy <= -direction; ++xy) {
-                        takeSpace(actingPlayer, opponent, origin.getX() - xy, origin.getY() + xy);
-                    }
-                }
-                continue;
-            }
-            if (origin.getX() < selectedDestination.getX()) {
-                //these two are diagonally oriented from each other
-                int direction = origin.getY() - selectedDestination.getY();
-                if (direction > 0) {
-                    //origin must travel positive x and negative y direction
-                    for (int xy = 0; xy <= direction; ++xy) {
-                        takeSpace(actingPlayer, opponent, origin.getX() + xy, origin.getY() - xy);
-                    }
-                } else {
-                    //origin must travel positive x and positive y direction
-                    for (int xy = 0; xy <= -direction; ++xy) {
-                        takeSpace(actingPlayer, opponent, origin.getX() + xy, origin.getY() + xy);
-                    }
-                }
-            }
+    /**
+     * Claims the selected destination and every space it flips for the acting player.
+     * @param actingPlayer the player that will claim spaces
+     * @param opponent the opposing player, that may lose spaces
+     * @param selectedDestination the destination the acting player selected
+     * @throws IllegalArgumentException if the destination is not a legal move for the acting player
+     */
+    public void takeSpaces(Player actingPlayer, Player opponent, BoardSpace selectedDestination) {
+        int x = selectedDestination.getX();
+        int y = selectedDestination.getY();
+        BitBoard bitBoard = getBitBoard(actingPlayer);
+        int destination = BitBoard.square(x, y);
+        if ((bitBoard.getLegalMoves() & (1L << destination)) == 0) {
+            throw new IllegalArgumentException("(" + x + ", " + y + ") is not a legal move");
+        }
+        long flips = BitBoard.flips(bitBoard.getPlayer(), bitBoard.getOpponent(), destination);
+        takeSpace(actingPlayer, opponent, x, y);
+        while (flips != 0) {
+            int square = Long.numberOfTrailingZeros(flips);
+            flips &= flips - 1;
+            takeSpace(actingPlayer, opponent, BitBoard.getX(square), BitBoard.getY(square));
         }
     }
 
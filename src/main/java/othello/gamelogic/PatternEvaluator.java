@@ -0,0 +1,309 @@
+package othello.gamelogic;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Evaluates positions with pattern tables: every pattern is a fixed line or block of squares,
+ * and the contents of those squares (empty, own or opponent disc) select a weight from the table.
+ * Each pattern is used in all its rotations and reflections, which share one table,
+ * and there is a separate set of tables for every game phase, chosen by the number of empty squares.
+ * Patterns that map onto themselves under some symmetries, like an edge, read the same squares in
+ * several orders; all those readings share the weight of the smallest index, so the score of a position
+ * is the same in every orientation of the board.
+ * Scores are predicted final disc differences in hundredths of a disc.
+ * The weights are fitted from the WTHOR games by dataProcessing.PatternTrainer.
+ */
+public class PatternEvaluator implements Evaluator {
+    // Classpath resource holding the weights fitted by PatternTrainer, next to this class
+    public static final String DEFAULT_WEIGHTS_RESOURCE = "patterns.bin";
+    // Phases of 10 empty squares each
+    public static final int NUM_PHASES = 6;
+    private static final int EMPTIES_PER_PHASE = 10;
+
+    // The patterns in one orientation, as {x, y} coordinates
+    private static final int[][][] PATTERNS = {
+            // An edge together with the two X squares next to its corners
+            {{0, 0}, {1, 0}, {2, 0}, {3, 0}, {4, 0}, {5, 0}, {6, 0}, {7, 0}, {1, 1}, {6, 1}},
+            // 3x3 corner block
+            {{0, 0}, {1, 0}, {2, 0}, {0, 1}, {1, 1}, {2, 1}, {0, 2}, {1, 2}, {2, 2}},
+            // 2x5 corner block
+            {{0, 0}, {1, 0}, {2, 0}, {3, 0}, {4, 0}, {0, 1}, {1, 1}, {2, 1}, {3, 1}, {4, 1}},
+            // Diagonals of length 8 down to 4
+            {{0, 0}, {1, 1}, {2, 2}, {3, 3}, {4, 4}, {5, 5}, {6, 6}, {7, 7}},
+            {{0, 1}, {1, 2}, {2, 3}, {3, 4}, {4, 5}, {5, 6}, {6, 7}},
+            {{0, 2}, {1, 3}, {2, 4}, {3, 5}, {4, 6}, {5, 7}},
+            {{0, 3}, {1, 4}, {2, 5}, {3, 6}, {4, 7}},
+            {{0, 4}, {1, 5}, {2, 6}, {3, 7}}
+    };
+
+    // Every orientation of every pattern as bit indices, and where its pattern's table starts in a phase
+    private static final int[][] INSTANCES;
+    private static final int[] INSTANCE_OFFSETS;
+    // Number of weights in one phase
+    private static final int PHASE_SIZE;
+    // Index in a phase of the weight actually used for each index, the same for every reading
+    // of a symmetric pattern's squares
+    private static final int[] CANONICAL;
+
+    static {
+        List<int[]> instances = new ArrayList<>();
+        List<Integer> offsets = new ArrayList<>();
+        List<int[]> canonical = new ArrayList<>();
+        int offset = 0;
+        for (int[][] pattern : PATTERNS) {
+            canonical.add(canonicalIndices(pattern, offset));
+            List<Long> seen = new ArrayList<>();
+            for (int symmetry = 0; symmetry < 8; symmetry++) {
+                int[] squares = new int[pattern.length];
+                long mask = 0;
+                for (int i = 0; i < pattern.length; i++) {
+                    squares[i] = transform(pattern[i][0], pattern[i][1], symmetry);
+                    mask |= 1L << squares[i];
+                }
+                // symmetric patterns map onto themselves, only keep one ordering of each set of squares
+                if (!seen.contains(mask)) {
+                    seen.add(mask);
+                    instances.add(squares);
+                    offsets.add(offset);
+                }
+            }
+            offset += pow3(pattern.length);
+        }
+        INSTANCES = instances.toArray(new int[0][]);
+        INSTANCE_OFFSETS = offsets.stream().mapToInt(Integer::intValue).toArray();
+        PHASE_SIZE = offset;
+        CANONICAL = new int[PHASE_SIZE];
+        int start = 0;
+        for (int[] table : canonical) {
+            System.arraycopy(table, 0, CANONICAL, start, table.length);
+            start += table.length;
+        }
+    }
+
+    /**
+     * Finds the symmetries that map the squares of pattern onto themselves, and for every configuration of
+     * the pattern the smallest index any of them reads it as
+     * @param offset start of the pattern's table in a phase, added to every result
+     * @return the canonical index in the phase of each index of the pattern
+     */
+    private static int[] canonicalIndices(int[][] pattern, int offset) {
+        int[] squares = new int[pattern.length];
+        long mask = 0;
+        for (int i = 0; i < pattern.length; i++) {
+            squares[i] = BitBoard.square(pattern[i][0], pattern[i][1]);
+            mask |= 1L << squares[i];
+        }
+        // for each symmetry of the pattern, which of its squares lands on each square of the pattern
+        List<int[]> permutations = new ArrayList<>();
+        for (int symmetry = 0; symmetry < 8; symmetry++) {
+            int[] permutation = new int[pattern.length];
+            long moved = 0;
+            for (int i = 0; i < pattern.length; i++) {
+                int square = transform(pattern[i][0], pattern[i][1], symmetry);
+                moved |= 1L << square;
+                for (int j = 0; j < pattern.length; j++) {
+                    if (squares[j] == square) {
+                        permutation[j] = i;
+                    }
+                }
+            }
+            if (moved == mask) {
+                permutations.add(permutation);
+            }
+        }
+
+        int size = pow3(pattern.length);
+        int[] canonical = new int[size];
+        int[] digits = new int[pattern.length];
+        for (int index = 0; index < size; index++) {
+            for (int i = pattern.length - 1, rest = index; i >= 0; i--, rest /= 3) {
+                digits[i] = rest % 3;
+            }
+            int smallest = index;
+            for (int[] permutation : permutations) {
+                int permuted = 0;
+                for (int i = 0; i < pattern.length; i++) {
+                    permuted = permuted * 3 + digits[permutation[i]];
+                }
+                smallest = Math.min(smallest, permuted);
+            }
+            canonical[index] = offset + smallest;
+        }
+        return canonical;
+    }
+
+    // weights[phase][offset + index]
+    private final short[][] weights;
+
+    /**
+     * @param weights pattern weights of every phase, as produced by PatternTrainer
+     */
+    public PatternEvaluator(short[][] weights) {
+        if (weights.length != NUM_PHASES) {
+            throw new IllegalArgumentException("Expected weights for " + NUM_PHASES + " phases");
+        }
+        for (short[] phase : weights) {
+            if (phase.length != PHASE_SIZE) {
+                throw new IllegalArgumentException("Expected " + PHASE_SIZE + " weights per phase");
+            }
+        }
+        this.weights = weights;
+    }
+
+    /**
+     * Loads the weights written by PatternTrainer from the DEFAULT_WEIGHTS_RESOURCE on the classpath
+     */
+    public PatternEvaluator() {
+        this(readResource(DEFAULT_WEIGHTS_RESOURCE));
+    }
+
+    @Override
+    public int evaluate(long player, long opponent) {
+        short[] phaseWeights = weights[phaseOf(BitBoard.NUM_SQUARES - Long.bitCount(player | opponent))];
+        int score = 0;
+        for (int i = 0; i < INSTANCES.length; i++) {
+            score += phaseWeights[CANONICAL[INSTANCE_OFFSETS[i] + index(INSTANCES[i], player, opponent)]];
+        }
+        return score;
+    }
+
+    /**
+     * Computes the weight index of every pattern orientation of a position. Only canonical indices
+     * are returned, the weights at other indices are never used.
+     * @param features receives one index per orientation, at least getFeatureCount() long
+     */
+    public static void features(long player, long opponent, int[] features) {
+        for (int i = 0; i < INSTANCES.length; i++) {
+            features[i] = CANONICAL[INSTANCE_OFFSETS[i] + index(INSTANCES[i], player, opponent)];
+        }
+    }
+
+    /**
+     * Base-3 index of the squares of one pattern orientation: 0 empty, 1 player, 2 opponent
+     */
+    private static int index(int[] squares, long player, long opponent) {
+        int index = 0;
+        for (int square : squares) {
+            index = index * 3 + (int) ((player >>> square) & 1) + 2 * (int) ((opponent >>> square) & 1);
+        }
+        return index;
+    }
+
+    /**
+     * @return the number of pattern orientations, which is the number of features of a position
+     */
+    public static int getFeatureCount() {
+        return INSTANCES.length;
+    }
+
+    /**
+     * @return the number of weights in one phase
+     */
+    public static int getPhaseSize() {
+        return PHASE_SIZE;
+    }
+
+    /**
+     * @return the phase of a position with the given number of empty squares
+     */
+    public static int phaseOf(int empties) {
+        return Math.min(empties / EMPTIES_PER_PHASE, NUM_PHASES - 1);
+    }
+
+    /**
+     * Writes pattern weights as a gzipped stream of the phase count, the phase size and the weights.
+     */
+    public static void write(short[][] weights, File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(file))))) {
+            out.writeInt(weights.length);
+            out.writeInt(weights[0].length);
+            for (short[] phase : weights) {
+                for (short weight : phase) {
+                    out.writeShort(weight);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads pattern weights written by write.
+     * @throws IllegalStateException if the file can't be read or has the wrong size
+     */
+    public static short[][] read(File file) {
+        try {
+            return read(new FileInputStream(file), file.toString());
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read pattern file " + file, e);
+        }
+    }
+
+    /**
+     * Reads pattern weights written by write from a classpath resource, relative to this class.
+     * @throws IllegalStateException if the resource is missing, can't be read or has the wrong size
+     */
+    public static short[][] readResource(String name) {
+        InputStream stream = PatternEvaluator.class.getResourceAsStream(name);
+        if (stream == null) {
+            throw new IllegalStateException("Pattern resource " + name + " is not on the classpath");
+        }
+        try {
+            return read(stream, name);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read pattern resource " + name, e);
+        }
+    }
+
+    /**
+     * Reads weights from a stream and closes it
+     * @param name file or resource the stream comes from, for error messages
+     */
+    private static short[][] read(InputStream stream, String name) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(stream)))) {
+            int phases = in.readInt();
+            int size = in.readInt();
+            if (phases != NUM_PHASES || size != PHASE_SIZE) {
+                throw new IllegalStateException("Pattern file " + name + " does not match the patterns");
+            }
+            short[][] weights = new short[phases][size];
+            for (short[] phase : weights) {
+                for (int i = 0; i < size; i++) {
+                    phase[i] = in.readShort();
+                }
+            }
+            return weights;
+        }
+    }
+
+    /**
+     * Applies one of the 8 symmetries of the board to a square
+     * @return the bit index of the transformed square
+     */
+    private static int transform(int x, int y, int symmetry) {
+        int last = BitBoard.BOARD_SIZE - 1;
+        if ((symmetry & 1) != 0) {
+            x = last - x;
+        }
+        if ((symmetry & 2) != 0) {
+            y = last - y;
+        }
+        if ((symmetry & 4) != 0) {
+            int swap = x;
+            x = y;
+            y = swap;
+        }
+        return BitBoard.square(x, y);
+    }
+
+    private static int pow3(int n) {
+        int result = 1;
+        for (int i = 0; i < n; i++) {
+            result *= 3;
+        }
+        return result;
+    }
+}
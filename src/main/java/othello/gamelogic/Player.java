@@ -34,133 +34,58 @@ public abstract class Player {
      */
     public Map<BoardSpace, List<BoardSpace>> getAvailableMoves(BoardSpace[][] board) {
         Map<BoardSpace, List<BoardSpace>> ret = new HashMap<>();
-        //go over rows
-        for (BoardSpace[] i:  board) {
-            Map<BoardSpace, List<BoardSpace>> rowsKV = checkValid(i);
-            mergeMaps(ret, rowsKV);
+        BitBoard bitBoard = BitBoard.fromBoard(board, color);
+        long player = bitBoard.getPlayer();
+        long moves = BitBoard.legalMoves(player, bitBoard.getOpponent());
+        //translate each destination in the move mask back to its origins
+        while (moves != 0) {
+            int square = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            int x = BitBoard.getX(square);
+            int y = BitBoard.getY(square);
+            ret.put(board[x][y], findOrigins(board, player, x, y));
         }
-        //go over columns
-        for (int j = 0; j < board.length; ++j) {
-            BoardSpace[] col = new BoardSpace[board.length];
-            for (int i = 0; i < board.length; ++i) {
-                col[i] = board[i][j];
-            }
-            Map<BoardSpace, List<BoardSpace>> colKV = checkValid(col);
-            mergeMaps(ret, colKV);
-        }
-        //go over top left to bottom right diagonals
-        for (int i = board.length - 1; i >= 0; --i) {
-            BoardSpace[] tldiag = new BoardSpace[board.length - i];
-            for (int j = 0; j < board.length - i; ++j) {
-                tldiag[j] = board[i + j][j];
-            }
-            Map<BoardSpace, List<BoardSpace>> colKV = checkValid(tldiag);
-            mergeMaps(ret, colKV);
-        }
-        for (int j = 1; j < board.length; ++j) {
-            BoardSpace[] tldiag = new BoardSpace[board.length - j];
-            for (int i = 0; i < board.length - j; ++i) {
-                tldiag[i] = board[i][j + i];
-            }
-            Map<BoardSpace, List<BoardSpace>> colKV = checkValid(tldiag);
-            mergeMaps(ret, colKV);
-        }
-
-        //go over top right to bottom left diagonals
-        for (int j = 0; j < board.length; ++j) {
-            BoardSpace[] trdiag = new BoardSpace[j + 1];
-            for (int i = 0; i < trdiag.length; ++i) {
-                trdiag[i] = board[i][j - i];
-            }
-            Map<BoardSpace, List<BoardSpace>> colKV = checkValid(trdiag);
-            mergeMaps(ret, colKV);
-        }
-        for (int i = 1; i < board.length; ++i) {
-            BoardSpace[] trdiag = new BoardSpace[board.length - i];
-            for (int j = board.length - 1; j >= i; --j) {
-                trdiag[board.length - 1 - j] = board[i + board.length - j - 1][j];
-            }
-            Map<BoardSpace, List<BoardSpace>> colKV = checkValid(trdiag);
-            mergeMaps(ret, colKV);
-        }
-
         return ret;
     }
-    private void mergeMaps(Map<BoardSpace, List<BoardSpace>> mainMap,
-                           Map<BoardSpace, List<BoardSpace>> tempMap) {
-        for (BoardSpace key: tempMap.keySet()) {
-            mainMap.putIfAbsent(key, new ArrayList<>());
-            for (BoardSpace origins: tempMap.get(key)) {
-                mainMap.get(key).add(origins);
-            }
-        }
-    }
+
     /**
-     *
-     * Helper method for getAvailableMoves. Takes in an array of BoardSpace that corresponds to the
-     * current row, column or diagonal being examined. Returns a boolean array that correspond to
-     * wether that space is valid or not
-     * @param spaces the BoardSpace objects that will be evaluated in order
-     * @return a hashmap of key value pairs that correspond to destination and a list of origin
+     * Helper method for getAvailableMoves. Walks outward from a legal destination in all 8 directions
+     * and collects the ally discs that flank at least one enemy disc.
+     * @param board the board being evaluated
+     * @param player occupancy mask of this player's discs
+     * @param x the x coordinate of the destination
+     * @param y the y coordinate of the destination
+     * @return the list of origins that can traverse to (x, y)
      */
-    private Map<BoardSpace, List<BoardSpace>> checkValid(BoardSpace[] spaces) {
-        //Hashmap that stores kv pairs of destination and list of origin
-        Map<BoardSpace, List<BoardSpace>> valids = new HashMap<>();
-        //corresponds to BoardSpace that is start of enemy position
-        int enemyStart = -1;
-        for (int i = 0; i < spaces.length; ++i) {
-            //check if current board space is empty
-            if (spaces[i].getType() == BoardSpace.SpaceType.EMPTY) {
-                //current board space is empty so can be a potential move
-                //check if there is a current enemy
-                if (enemyStart != -1) {
-                    //check starting  flanks of enemy
-
-                    if (enemyStart != 0 && spaces[enemyStart - 1].getType() == color) {
-                        //if beginning is an ally, current is empty so current is a valid flank
-                        //add current to valid moves map and ally to origins
-                        valids.putIfAbsent(spaces[i], new ArrayList<>());
-                        valids.get(spaces[i]).add(spaces[enemyStart - 1]);
-                    }
-                    //if beginning is an empty square, current is empty so no flank is possible
-                    //reset enemy
-                    enemyStart = -1;
+    private List<BoardSpace> findOrigins(BoardSpace[][] board, long player, int x, int y) {
+        List<BoardSpace> origins = new ArrayList<>();
+        for (int dx = -1; dx <= 1; ++dx) {
+            for (int dy = -1; dy <= 1; ++dy) {
+                if (dx == 0 && dy == 0) {
+                    continue;
                 }
-                //there is no enemy so do nothing
-            //check if current board space is an enemy
-            } else if (spaces[i].getType() != color) {
-                //check if there is a start of enemy
-                if (enemyStart == -1) {
-                    //if there is no start, then set enemyStart
-                    enemyStart = i;
-                }
-                //if there is already an enemy do nothing
-
-            } else {
-                //current board space is an ally
-                //check if there is a current enemy
-                if (enemyStart != -1) {
-                    //there is an enemy
-                    //check if there is a piece before the enemy start
-                    //check if piece before the enemy start is empty
-                    if (enemyStart - 1 >= 0 &&
-                            spaces[enemyStart - 1].getType() == BoardSpace.SpaceType.EMPTY) {
-                        //if beginning is empty, current is ally so beginning is a valid flank
-                        //add beginning to valid moves and current to origin
-                        valids.putIfAbsent(spaces[enemyStart - 1], new ArrayList<>());
-                        valids.get(spaces[enemyStart - 1]).add(spaces[i]);
+                int curX = x + dx;
+                int curY = y + dy;
+                int enemies = 0;
+                while (curX >= 0 && curX < board.length && curY >= 0 && curY < board.length) {
+                    BoardSpace.SpaceType type = board[curX][curY].getType();
+                    if (type == BoardSpace.SpaceType.EMPTY) {
+                        break;
+                    }
+                    if ((player & (1L << BitBoard.square(curX, curY))) != 0) {
+                        //ally closes the line, only an origin if enemies were flanked
+                        if (enemies > 0) {
+                            origins.add(board[curX][curY]);
+                        }
+                        break;
                     }
-                    //if beginning is an ally nothing can be added
-                    //reset enemy
-                    enemyStart = -1;
+                    ++enemies;
+                    curX += dx;
+                    curY += dy;
                 }
-                //there is no enemy so do nothing
             }
-
-
-
         }
-        return valids;
+        return origins;
     }
 
 }
@@ -0,0 +1,168 @@
+package othello.gamelogic;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size hash table of search results, indexed by Zobrist key.
+ * The table is allocated once as two primitive arrays, so storing and probing never allocates.
+ * Each bucket holds two entries: the first is only replaced by a result searched at least as deep
+ * (or left over from an older search), the second is always replaced.
+ * Every entry packs the depth, bound type, score, best move and search generation into one long:
+ * bits 0-31 score, 32-39 depth, 40-41 bound, 42-48 best move + 1 (0 for none),
+ * 49-55 generation and bit 63 set for a used entry.
+ * The key of an entry is stored XORed with its data, so an entry torn by two threads writing it
+ * at the same time fails the key check instead of returning another position's data.
+ * This lets search threads share one table without locks.
+ */
+public class TranspositionTable {
+    // Bound types, describing how the stored score relates to the true score
+    public static final int EXACT = 0;
+    public static final int LOWER_BOUND = 1;
+    public static final int UPPER_BOUND = 2;
+
+    // Size of one entry in bytes, an 8 byte key plus 8 bytes of data
+    private static final int ENTRY_BYTES = 16;
+    private static final int ENTRIES_PER_BUCKET = 2;
+    private static final long USED = 1L << 63;
+    private static final int GENERATION_MASK = 0x7F;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int bucketMask;
+    private int generation;
+
+    /**
+     * Creates a table using at most the given amount of memory.
+     * @param budgetBytes memory budget, rounded down to a power of two number of buckets
+     */
+    public TranspositionTable(long budgetBytes) {
+        long buckets = budgetBytes / (ENTRY_BYTES * ENTRIES_PER_BUCKET);
+        if (buckets < 1) {
+            throw new IllegalArgumentException("Budget must fit at least one bucket");
+        }
+        // keep the arrays under the maximum array length
+        buckets = Math.min(Long.highestOneBit(buckets), 1L << 29);
+        bucketMask = (int) buckets - 1;
+        keys = new long[(int) buckets * ENTRIES_PER_BUCKET];
+        data = new long[(int) buckets * ENTRIES_PER_BUCKET];
+    }
+
+    /**
+     * @return the number of entries the table can hold
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Marks the start of a new search, so entries from earlier searches can be replaced first.
+     */
+    public void newSearch() {
+        generation = (generation + 1) & GENERATION_MASK;
+    }
+
+    /**
+     * Empties the table.
+     */
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(data, 0);
+    }
+
+    /**
+     * Looks up a position.
+     * @param key Zobrist key of the position
+     * @return the packed entry, or 0 if the position is not in the table
+     */
+    public long probe(long key) {
+        int index = (int) key & bucketMask;
+        index *= ENTRIES_PER_BUCKET;
+        long first = data[index];
+        if ((keys[index] ^ first) == key && (first & USED) != 0) {
+            return first;
+        }
+        long second = data[index + 1];
+        if ((keys[index + 1] ^ second) == key && (second & USED) != 0) {
+            return second;
+        }
+        return 0;
+    }
+
+    /**
+     * Stores a search result.
+     * @param key Zobrist key of the position
+     * @param depth remaining depth the position was searched to
+     * @param bound EXACT, LOWER_BOUND or UPPER_BOUND
+     * @param score the score found
+     * @param move bit index of the best move found, BitBoard.PASS for none
+     */
+    public void store(long key, int depth, int bound, int score, int move) {
+        int index = (int) key & bucketMask;
+        index *= ENTRIES_PER_BUCKET;
+        long entry = pack(depth, bound, score, move);
+        long first = data[index];
+        boolean sameKey = (keys[index] ^ first) == key;
+        // keep the best move of an earlier search of this position if this one found none
+        if (move == BitBoard.PASS && sameKey && (first & USED) != 0) {
+            entry = withMove(entry, first);
+        }
+        if (sameKey || (first & USED) == 0 || depth >= depthOf(first)
+                || generationOf(first) != generation) {
+            data[index] = entry;
+            keys[index] = key ^ entry;
+        } else {
+            long second = data[index + 1];
+            if (move == BitBoard.PASS && (keys[index + 1] ^ second) == key && (second & USED) != 0) {
+                entry = withMove(entry, second);
+            }
+            data[index + 1] = entry;
+            keys[index + 1] = key ^ entry;
+        }
+    }
+
+    private long pack(int depth, int bound, int score, int move) {
+        return (score & 0xFFFFFFFFL)
+                | ((long) Math.min(depth, 0xFF) << 32)
+                | ((long) bound << 40)
+                | ((long) (move + 1) << 42)
+                | ((long) generation << 49)
+                | USED;
+    }
+
+    private static long withMove(long entry, long from) {
+        long moveBits = 0x7FL << 42;
+        return (entry & ~moveBits) | (from & moveBits);
+    }
+
+    /**
+     * @return the score stored in a packed entry
+     */
+    public static int scoreOf(long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * @return the remaining depth stored in a packed entry
+     */
+    public static int depthOf(long entry) {
+        return (int) (entry >>> 32) & 0xFF;
+    }
+
+    /**
+     * @return the bound type stored in a packed entry
+     */
+    public static int boundOf(long entry) {
+        return (int) (entry >>> 40) & 0x3;
+    }
+
+    /**
+     * @return the best move stored in a packed entry, BitBoard.PASS for none
+     */
+    public static int moveOf(long entry) {
+        return (int) ((entry >>> 42) & 0x7F) - 1;
+    }
+
+    private static int generationOf(long entry) {
+        return (int) (entry >>> 49) & GENERATION_MASK;
+    }
+}
@@ -0,0 +1,96 @@
+package othello.gamelogic;
+
+/**
+ * Zobrist keys used to identify positions with a single 64-bit number.
+ * A key is the XOR of one random number per occupied square and color, plus one for white to move.
+ * The numbers come from a fixed seed so that keys are the same across runs, which lets keys be
+ * stored on disk alongside data such as the WTHOR games.
+ */
+public final class Zobrist {
+    private static final long SEED = 0x5EED0F07E110L;
+
+    private static final long[] BLACK_KEYS = new long[BitBoard.NUM_SQUARES];
+    private static final long[] WHITE_KEYS = new long[BitBoard.NUM_SQUARES];
+    // BLACK_KEYS[i] ^ WHITE_KEYS[i], toggles a square between the two colors when a disc flips
+    private static final long[] FLIP_KEYS = new long[BitBoard.NUM_SQUARES];
+    private static final long WHITE_TO_MOVE;
+
+    static {
+        long state = SEED;
+        for (int i = 0; i < BitBoard.NUM_SQUARES; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            BLACK_KEYS[i] = mix(state);
+            state += 0x9E3779B97F4A7C15L;
+            WHITE_KEYS[i] = mix(state);
+            FLIP_KEYS[i] = BLACK_KEYS[i] ^ WHITE_KEYS[i];
+        }
+        state += 0x9E3779B97F4A7C15L;
+        WHITE_TO_MOVE = mix(state);
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Computes the key of a position from scratch.
+     * @param black occupancy mask of the black discs
+     * @param white occupancy mask of the white discs
+     * @param sideToMove color of the player whose turn it is
+     * @return the Zobrist key of the position
+     */
+    public static long hash(long black, long white, BoardSpace.SpaceType sideToMove) {
+        long key = sideToMove == BoardSpace.SpaceType.WHITE ? WHITE_TO_MOVE : 0;
+        while (black != 0) {
+            key ^= BLACK_KEYS[Long.numberOfTrailingZeros(black)];
+            black &= black - 1;
+        }
+        while (white != 0) {
+            key ^= WHITE_KEYS[Long.numberOfTrailingZeros(white)];
+            white &= white - 1;
+        }
+        return key;
+    }
+
+    /**
+     * Computes the key of a BoardSpace[][] board.
+     * @param board the board to hash, indexed [x][y]
+     * @param sideToMove color of the player whose turn it is
+     * @return the Zobrist key of the position
+     */
+    public static long hash(BoardSpace[][] board, BoardSpace.SpaceType sideToMove) {
+        return BitBoard.fromBoard(board, sideToMove).getKey();
+    }
+
+    /**
+     * @return the key change of placing a disc of the given color on square
+     */
+    static long place(BoardSpace.SpaceType color, int square) {
+        return color == BoardSpace.SpaceType.BLACK ? BLACK_KEYS[square] : WHITE_KEYS[square];
+    }
+
+    /**
+     * @return the key change of flipping every disc in flipped to the other color
+     */
+    static long flip(long flipped) {
+        long key = 0;
+        while (flipped != 0) {
+            key ^= FLIP_KEYS[Long.numberOfTrailingZeros(flipped)];
+            flipped &= flipped - 1;
+        }
+        return key;
+    }
+
+    /**
+     * @return the key change of passing the turn to the other player
+     */
+    static long side() {
+        return WHITE_TO_MOVE;
+    }
+
+    // SplitMix64 finalizer, spreads a counter into a well mixed 64-bit value
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,216 @@
+import othello.gamelogic.*;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+public class BitBoardTest {
+
+    @Test
+    public void testStartingPosition() {
+        Player p1 = new HumanPlayer();
+        Player p2 = new HumanPlayer();
+        p1.setColor(BoardSpace.SpaceType.BLACK);
+        p2.setColor(BoardSpace.SpaceType.WHITE);
+
+        OthelloGame og = new OthelloGame(p1, p2);
+        BitBoard bb = og.getBitBoard(p1);
+
+        assertEquals(2, bb.countDiscs(BoardSpace.SpaceType.BLACK));
+        assertEquals(2, bb.countDiscs(BoardSpace.SpaceType.WHITE));
+        assertEquals(60, bb.countEmpty());
+        assertSame(BoardSpace.SpaceType.BLACK, bb.getType(3, 4));
+        assertSame(BoardSpace.SpaceType.BLACK, bb.getType(4, 3));
+        assertSame(BoardSpace.SpaceType.WHITE, bb.getType(3, 3));
+        assertSame(BoardSpace.SpaceType.WHITE, bb.getType(4, 4));
+        assertEquals(bb.getBlack(), bb.getPlayer());
+        assertEquals(bb.getWhite(), bb.getOpponent());
+
+        // the factory gives the same position as a new game
+        BitBoard start = BitBoard.start();
+        assertEquals(bb.getBlack(), start.getBlack());
+        assertEquals(bb.getWhite(), start.getWhite());
+        assertSame(BoardSpace.SpaceType.BLACK, start.getSideToMove());
+        assertEquals(bb.getKey(), start.getKey());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        BoardSpace[][] board = new BoardSpace[8][8];
+        for (int x = 0; x < board.length; ++x) {
+            for (int y = 0; y < board[x].length; ++y) {
+                BoardSpace.SpaceType type = BoardSpace.SpaceType.values()[(x * 7 + y * 3) % 3];
+                board[x][y] = new BoardSpace(x, y, type);
+            }
+        }
+        BitBoard bb = BitBoard.fromBoard(board, BoardSpace.SpaceType.WHITE);
+        BoardSpace[][] converted = bb.toBoard();
+        for (int x = 0; x < board.length; ++x) {
+            for (int y = 0; y < board[x].length; ++y) {
+                assertSame(board[x][y].getType(), converted[x][y].getType());
+                assertEquals(x, converted[x][y].getX());
+                assertEquals(y, converted[x][y].getY());
+            }
+        }
+        assertEquals(bb, BitBoard.fromBoard(converted, BoardSpace.SpaceType.WHITE));
+    }
+
+    @Test
+    public void testLegalMovesStartingState() {
+        Player p1 = new HumanPlayer();
+        Player p2 = new HumanPlayer();
+        p1.setColor(BoardSpace.SpaceType.BLACK);
+        p2.setColor(BoardSpace.SpaceType.WHITE);
+
+        OthelloGame og = new OthelloGame(p1, p2);
+        long expected = (1L << BitBoard.square(5, 4)) | (1L << BitBoard.square(4, 5))
+                | (1L << BitBoard.square(3, 2)) | (1L << BitBoard.square(2, 3));
+        assertEquals(expected, og.getBitBoard(p1).getLegalMoves());
+    }
+
+    @Test
+    public void testLegalMovesNoWrap() {
+        // black at the right edge, white at the start of the next row
+        long black = 1L << BitBoard.square(7, 3);
+        long white = (1L << BitBoard.square(0, 4)) | (1L << BitBoard.square(1, 4));
+        assertEquals(0L, BitBoard.legalMoves(black, white));
+
+        // black on the left edge of a diagonal, white at the right edge a row below
+        black = 1L << BitBoard.square(0, 2);
+        white = 1L << BitBoard.square(7, 2);
+        assertEquals(0L, BitBoard.legalMoves(black, white));
+    }
+
+    @Test
+    public void testPlayFlipsSplit() {
+        // black at both ends of a row with white discs split by an empty space
+        long black = (1L << BitBoard.square(2, 3)) | (1L << BitBoard.square(6, 3));
+        long white = (1L << BitBoard.square(3, 3)) | (1L << BitBoard.square(5, 3));
+        BitBoard bb = new BitBoard(black, white, BoardSpace.SpaceType.BLACK);
+
+        long flipped = bb.play(BitBoard.square(4, 3));
+
+        assertEquals(white, flipped);
+        assertEquals(0L, bb.getWhite());
+        assertEquals(5, bb.countDiscs(BoardSpace.SpaceType.BLACK));
+        assertSame(BoardSpace.SpaceType.WHITE, bb.getSideToMove());
+    }
+
+    @Test
+    public void testUndoRestoresPosition() {
+        Player p1 = new HumanPlayer();
+        Player p2 = new HumanPlayer();
+        p1.setColor(BoardSpace.SpaceType.BLACK);
+        p2.setColor(BoardSpace.SpaceType.WHITE);
+
+        OthelloGame og = new OthelloGame(p1, p2);
+        BitBoard bb = og.getBitBoard(p1);
+        BitBoard start = new BitBoard(bb);
+
+        int first = BitBoard.square(5, 4);
+        long firstFlips = bb.play(first);
+        BitBoard afterFirst = new BitBoard(bb);
+        int second = Long.numberOfTrailingZeros(bb.getLegalMoves());
+        long secondFlips = bb.play(second);
+
+        bb.undo(second, secondFlips);
+        assertEquals(afterFirst, bb);
+        bb.undo(first, firstFlips);
+        assertEquals(start, bb);
+    }
+
+    @Test
+    public void testZobristKeyIncremental() {
+        Player p1 = new HumanPlayer();
+        Player p2 = new HumanPlayer();
+        p1.setColor(BoardSpace.SpaceType.BLACK);
+        p2.setColor(BoardSpace.SpaceType.WHITE);
+
+        OthelloGame og = new OthelloGame(p1, p2);
+        BitBoard bb = og.getBitBoard(p1);
+        long startKey = bb.getKey();
+        assertEquals(startKey, Zobrist.hash(og.getBoard(), BoardSpace.SpaceType.BLACK));
+
+        int[] squares = new int[6];
+        long[] flips = new long[6];
+        for (int i = 0; i < squares.length; i++) {
+            squares[i] = Long.numberOfTrailingZeros(bb.getLegalMoves());
+            flips[i] = bb.play(squares[i]);
+            assertEquals(Zobrist.hash(bb.getBlack(), bb.getWhite(), bb.getSideToMove()), bb.getKey());
+        }
+        bb.pass();
+        assertEquals(Zobrist.hash(bb.getBlack(), bb.getWhite(), bb.getSideToMove()), bb.getKey());
+        bb.pass();
+        for (int i = squares.length - 1; i >= 0; i--) {
+            bb.undo(squares[i], flips[i]);
+        }
+        assertEquals(startKey, bb.getKey());
+    }
+
+    @Test
+    public void testZobristKeyTransposition() {
+        Player p1 = new HumanPlayer();
+        Player p2 = new HumanPlayer();
+        p1.setColor(BoardSpace.SpaceType.BLACK);
+        p2.setColor(BoardSpace.SpaceType.WHITE);
+        OthelloGame og = new OthelloGame(p1, p2);
+
+        // f5 f6 e6 and e6 f6 f5 (in WTHOR order) reach the same position
+        BitBoard first = og.getBitBoard(p1);
+        first.play(BitBoard.square(5, 4));
+        first.play(BitBoard.square(5, 5));
+        first.play(BitBoard.square(4, 5));
+        BitBoard second = og.getBitBoard(p1);
+        second.play(BitBoard.square(4, 5));
+        second.play(BitBoard.square(5, 5));
+        second.play(BitBoard.square(5, 4));
+
+        assertEquals(first, second);
+        assertEquals(first.getKey(), second.getKey());
+        second.pass();
+        assertNotEquals(first.getKey(), second.getKey());
+    }
+
+    @Test
+    public void testFlipsNotClosed() {
+        // white run reaches the edge of the board without a black disc behind it
+        long black = 1L << BitBoard.square(4, 3);
+        long white = (1L << BitBoard.square(5, 3)) | (1L << BitBoard.square(6, 3))
+                | (1L << BitBoard.square(7, 3));
+        assertEquals(0L, BitBoard.flips(black, white, BitBoard.square(3, 3)));
+        assertEquals(0L, BitBoard.flips(white, black, BitBoard.square(0, 4)));
+    }
+
+    @Test
+    public void testWriteToKeepsSpaces() {
+        Player p1 = new HumanPlayer();
+        Player p2 = new HumanPlayer();
+        p1.setColor(BoardSpace.SpaceType.BLACK);
+        p2.setColor(BoardSpace.SpaceType.WHITE);
+
+        OthelloGame og = new OthelloGame(p1, p2);
+        BoardSpace[][] board = og.getBoard();
+        BoardSpace corner = board[0][0];
+
+        BitBoard bb = new BitBoard(1L, 1L << 63, BoardSpace.SpaceType.BLACK);
+        bb.writeTo(board);
+
+        assertSame(corner, board[0][0]);
+        assertSame(BoardSpace.SpaceType.BLACK, board[0][0].getType());
+        assertSame(BoardSpace.SpaceType.WHITE, board[7][7].getType());
+        assertSame(BoardSpace.SpaceType.EMPTY, board[3][3].getType());
+    }
+
+    @Test
+    public void testNeighbours() {
+        // a corner touches three squares and no square wraps to the other side of the board
+        long corner = 1L << BitBoard.square(7, 0);
+        long expected = (1L << BitBoard.square(6, 0)) | (1L << BitBoard.square(6, 1)) | (1L << BitBoard.square(7, 1));
+        assertEquals(expected, BitBoard.neighbours(corner));
+
+        assertEquals(8, Long.bitCount(BitBoard.neighbours(1L << BitBoard.square(3, 3))));
+        assertEquals(-1L, BitBoard.neighbours(-1L));
+    }
+}
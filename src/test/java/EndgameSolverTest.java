@@ -0,0 +1,113 @@
+import othello.gamelogic.*;
+
+import org.junit.Test;
+import test.RandomGames;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class EndgameSolverTest {
+
+    /**
+     * Plays random moves from the starting position until the given number of squares is empty
+     */
+    private static BitBoard randomPosition(Random random, int empties) {
+        BitBoard board = BitBoard.start();
+        RandomGames.play(board, random, empties);
+        return board.countEmpty() == empties && board.getLegalMoves() != 0 ? board : null;
+    }
+
+    /**
+     * Plain negamax over the whole game tree
+     */
+    private static int bruteForce(BitBoard board) {
+        long moves = board.getLegalMoves();
+        if (moves == 0) {
+            board.pass();
+            int score;
+            if (board.getLegalMoves() == 0) {
+                int difference = Long.bitCount(board.getOpponent()) - Long.bitCount(board.getPlayer());
+                score = difference > 0 ? difference + board.countEmpty()
+                        : difference < 0 ? difference - board.countEmpty() : 0;
+            } else {
+                score = -bruteForce(board);
+            }
+            board.pass();
+            return score;
+        }
+        int best = Integer.MIN_VALUE;
+        while (moves != 0) {
+            int square = Long.numberOfTrailingZeros(moves);
+            moves &= moves - 1;
+            long flipped = board.play(square);
+            best = Math.max(best, -bruteForce(board));
+            board.undo(square, flipped);
+        }
+        return best;
+    }
+
+    @Test
+    public void testExactMatchesBruteForce() {
+        Random random = new Random(5);
+        EndgameSolver solver = new EndgameSolver();
+        int solved = 0;
+        while (solved < 30) {
+            BitBoard position = randomPosition(random, 1 + solved % 8);
+            if (position == null) {
+                continue;
+            }
+            solver.solve(position, EndgameSolver.Mode.EXACT, Long.MAX_VALUE, 0);
+            assertEquals(bruteForce(new BitBoard(position)), solver.getScore());
+            solved++;
+        }
+    }
+
+    @Test
+    public void testWinLossDrawSign() {
+        Random random = new Random(6);
+        EndgameSolver solver = new EndgameSolver();
+        int solved = 0;
+        while (solved < 20) {
+            BitBoard position = randomPosition(random, 8);
+            if (position == null) {
+                continue;
+            }
+            solver.solve(position, EndgameSolver.Mode.WIN_LOSS_DRAW, Long.MAX_VALUE, 0);
+            assertEquals(Integer.signum(bruteForce(new BitBoard(position))), Integer.signum(solver.getScore()));
+            solved++;
+        }
+    }
+
+    @Test
+    public void testBestMoveReachesScore() {
+        Random random = new Random(7);
+        EndgameSolver solver = new EndgameSolver();
+        BitBoard position = null;
+        while (position == null) {
+            position = randomPosition(random, 7);
+        }
+        int move = solver.solve(position, EndgameSolver.Mode.EXACT, Long.MAX_VALUE, 0);
+        BitBoard child = new BitBoard(position);
+        child.play(move);
+        assertEquals(solver.getScore(), -bruteForce(child));
+    }
+
+    @Test
+    public void testDeadline() {
+        Random random = new Random(8);
+        BitBoard position = null;
+        while (position == null) {
+            position = randomPosition(random, 26);
+        }
+        EndgameSolver solver = new EndgameSolver();
+        long start = System.nanoTime();
+        solver.solve(position, EndgameSolver.Mode.EXACT, start + 50_000_000L, 0);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // 26 empties take far longer than the budget to solve, so the solver gives up close to its deadline
+        assertTrue(solver.isAborted());
+        assertTrue("Solver should stop near its deadline, took " + elapsedMillis + "ms", elapsedMillis < 500);
+    }
+}
@@ -0,0 +1,74 @@
+import othello.gamelogic.*;
+
+import org.junit.Test;
+import test.RandomGames;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class FeatureEvaluatorTest {
+
+    @Test
+    public void testStableDiscs() {
+        // a disc on a corner and the edge discs next to it can't be flipped, the one inside can
+        long black = (1L << BitBoard.square(0, 0)) | (1L << BitBoard.square(1, 0))
+                | (1L << BitBoard.square(0, 1)) | (1L << BitBoard.square(1, 1));
+        long white = 1L << BitBoard.square(2, 2);
+        long expected = black & ~(1L << BitBoard.square(1, 1));
+        assertEquals(expected, FeatureEvaluator.stableDiscs(black, white));
+
+        // nothing is stable without an anchor on the edge or a full line
+        assertEquals(0L, FeatureEvaluator.stableDiscs(1L << BitBoard.square(1, 1), white));
+
+        // every disc of a full board is stable
+        assertEquals(0x00000000FFFFFFFFL, FeatureEvaluator.stableDiscs(0x00000000FFFFFFFFL, 0xFFFFFFFF00000000L));
+    }
+
+    @Test
+    public void testStableDiscsAreNeverFlipped() {
+        Random random = new Random(5);
+        for (int game = 0; game < 200; game++) {
+            int[] moves = RandomGames.play(BitBoard.start(), random);
+            BitBoard board = BitBoard.start();
+            long stableBlack = 0;
+            long stableWhite = 0;
+            for (int move : moves) {
+                if (move == BitBoard.PASS) {
+                    board.pass();
+                    continue;
+                }
+                board.play(move);
+
+                // discs found stable earlier keep their color for the rest of the game
+                assertEquals(stableBlack, board.getBlack() & stableBlack);
+                assertEquals(stableWhite, board.getWhite() & stableWhite);
+                stableBlack = FeatureEvaluator.stableDiscs(board.getBlack(), board.getWhite());
+                stableWhite = FeatureEvaluator.stableDiscs(board.getWhite(), board.getBlack());
+            }
+        }
+    }
+
+    @Test
+    public void testWeightedSum() {
+        BitBoard board = BitBoard.start();
+        board.play(BitBoard.square(5, 4));
+        long black = board.getBlack();
+        long white = board.getWhite();
+
+        FeatureEvaluator evaluator = new FeatureEvaluator();
+        for (FeatureEvaluator.Feature feature : FeatureEvaluator.Feature.values()) {
+            evaluator.setWeight(feature, 0);
+        }
+        assertEquals(0, evaluator.evaluate(black, white));
+
+        // black has 3 moves against white's 3, and 4 discs against 1
+        evaluator.setWeight(FeatureEvaluator.Feature.MOBILITY, 1);
+        assertEquals(0, evaluator.evaluate(black, white));
+        evaluator.setWeight(FeatureEvaluator.Feature.FRONTIER, 2);
+        assertEquals(2 * (4 - 1), evaluator.evaluate(black, white));
+
+        // features are differences, so swapping the players negates the score
+        assertEquals(-evaluator.evaluate(black, white), evaluator.evaluate(white, black));
+    }
+}
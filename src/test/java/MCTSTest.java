@@ -1,12 +1,15 @@
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.util.*;
+import othello.gamelogic.BitBoard;
 import othello.gamelogic.BoardSpace;
 import othello.gamelogic.HumanPlayer;
 import othello.gamelogic.MCTS;
 import othello.gamelogic.Player;
+import test.RandomGames;
 
 public class MCTSTest {
 
@@ -33,6 +36,11 @@ public class MCTSTest {
         board[4][3].setType(BoardSpace.SpaceType.BLACK);
     }
 
+    @AfterEach
+    public void tearDown() {
+        mcts.shutdown();
+    }
+
 
     @Test
     public void testMakeMoves() {
@@ -53,6 +61,229 @@ public class MCTSTest {
         }
     }
 
+    @Test
+    public void testParallelMakeMoves() {
+        mcts.setThreads(4);
+        for (int i = 0; i < 5; i++) {
+            BoardSpace move = mcts.makeMove(board, player);
+            assertNotNull(move);
+
+            boolean validMove = false;
+            for (BoardSpace availableMove : player.getAvailableMoves(board).keySet()) {
+                if (move.getX() == availableMove.getX() && move.getY() == availableMove.getY()) {
+                    validMove = true;
+                    break;
+                }
+            }
+            assertTrue(validMove);
+        }
+    }
+
+    @Test
+    public void testParallelismModes() {
+        mcts.setThreads(3);
+        for (MCTS.Parallelism parallelism : MCTS.Parallelism.values()) {
+            mcts.setParallelism(parallelism);
+            BoardSpace move = mcts.makeMove(board, player);
+            assertNotNull(move);
+
+            boolean validMove = false;
+            for (BoardSpace availableMove : player.getAvailableMoves(board).keySet()) {
+                if (move.getX() == availableMove.getX() && move.getY() == availableMove.getY()) {
+                    validMove = true;
+                    break;
+                }
+            }
+            assertTrue(validMove, parallelism + " should pick a legal move");
+        }
+    }
+
+    @Test
+    public void testTreeReuse() {
+        mcts.setEarlyStop(false);
+        mcts.makeMove(board, player);
+        assertEquals(1000, mcts.getRootVisits());
+
+        // asking again for the same position continues from the same tree
+        BoardSpace move = mcts.makeMove(board, player);
+        assertEquals(2000, mcts.getRootVisits());
+
+        // after the move and a reply the search starts from the statistics of that grandchild
+        BitBoard position = BitBoard.fromBoard(board, BoardSpace.SpaceType.BLACK);
+        position.play(BitBoard.square(move.getX(), move.getY()));
+        position.play(Long.numberOfTrailingZeros(position.getLegalMoves()));
+        position.writeTo(board);
+        mcts.makeMove(board, player);
+        assertTrue(mcts.getRootVisits() > 1000);
+
+        mcts.setReuseTree(false);
+        mcts.makeMove(board, player);
+        assertEquals(1000, mcts.getRootVisits());
+    }
+
+    @Test
+    public void testBudgets() {
+        mcts.setReuseTree(false);
+        mcts.setIterations(0);
+        mcts.setTimeLimitMillis(100);
+        long start = System.currentTimeMillis();
+        assertNotNull(mcts.makeMove(board, player));
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue(elapsed < 1000, "Search should respect its time budget, took " + elapsed + "ms");
+
+        // every playout adds one node
+        mcts.setTimeLimitMillis(0);
+        mcts.setNodeLimit(50);
+        assertNotNull(mcts.makeMove(board, player));
+        assertTrue(mcts.getRootVisits() <= 50);
+    }
+
+    @Test
+    public void testEarlyStop() {
+        // a single legal move is decided long before the budget runs out
+        BoardSpace[][] forced = new BitBoard(0x000C08F838780000L, 0x2830200000000000L,
+                BoardSpace.SpaceType.BLACK).toBoard();
+
+        BoardSpace move = mcts.makeMove(forced, player);
+        assertEquals(6, move.getX());
+        assertEquals(6, move.getY());
+        assertTrue(mcts.getRootVisits() < 1000);
+
+        mcts.setReuseTree(false);
+        mcts.setEarlyStop(false);
+        mcts.makeMove(forced, player);
+        assertEquals(1000, mcts.getRootVisits());
+    }
+
+    @Test
+    public void testRave() {
+        mcts.setRave(true);
+        mcts.setRaveEquivalence(100);
+        BoardSpace move = mcts.makeMove(board, player);
+        assertNotNull(move);
+        assertTrue(player.getAvailableMoves(board).keySet().stream()
+                .anyMatch(m -> m.getX() == move.getX() && m.getY() == move.getY()));
+
+        // AMAF statistics are collected from the playouts of every parallel mode
+        mcts.setThreads(2);
+        for (MCTS.Parallelism parallelism : MCTS.Parallelism.values()) {
+            mcts.setParallelism(parallelism);
+            assertNotNull(mcts.makeMove(board, player), parallelism + " should pick a move");
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> mcts.setRaveEquivalence(0));
+    }
+
+    @Test
+    public void testTranspositions() {
+        mcts.setTranspositions(true);
+        mcts.setEarlyStop(false);
+        BoardSpace move = mcts.makeMove(board, player);
+        assertNotNull(move);
+        assertTrue(player.getAvailableMoves(board).keySet().stream()
+                .anyMatch(m -> m.getX() == move.getX() && m.getY() == move.getY()));
+        assertEquals(1000, mcts.getRootVisits());
+
+        // the graph is kept between moves like the tree
+        mcts.makeMove(board, player);
+        assertEquals(2000, mcts.getRootVisits());
+
+        mcts.setThreads(2);
+        for (MCTS.Parallelism parallelism : MCTS.Parallelism.values()) {
+            mcts.setParallelism(parallelism);
+            mcts.setRave(parallelism == MCTS.Parallelism.TREE);
+            assertNotNull(mcts.makeMove(board, player), parallelism + " should pick a move");
+        }
+    }
+
+    @Test
+    public void testRootParallelTranspositions() {
+        mcts.setTranspositions(true);
+        mcts.setEarlyStop(false);
+        mcts.setReuseTree(false);
+        mcts.setThreads(2);
+        // every playout visits exactly one root move of one tree, whether or not the trees could share positions
+        for (MCTS.Parallelism parallelism : MCTS.Parallelism.values()) {
+            mcts.setParallelism(parallelism);
+            mcts.makeMove(board, player);
+            int total = 0;
+            for (int visits : mcts.getRootMoveVisits()) {
+                total += visits;
+            }
+            assertEquals(1000, total, parallelism + " should count every playout once");
+        }
+    }
+
+    /**
+     * Replays the moves of a rollout from position, checking that each is legal and that nothing follows
+     * the end of the game
+     * @return the number of passes in the game
+     */
+    private static int replayRollout(BitBoard position, long seed) {
+        int[] moves = new int[2 * BitBoard.NUM_SQUARES + 1];
+        Arrays.fill(moves, Integer.MIN_VALUE);
+        long[] played = new long[2];
+        boolean blackToMove = position.getSideToMove() == BoardSpace.SpaceType.BLACK;
+        int difference = MCTS.rollout(position.getBlack(), position.getWhite(), blackToMove, seed, played, moves);
+
+        // the same seed plays the same game
+        assertEquals(difference, MCTS.rollout(position.getBlack(), position.getWhite(), blackToMove, seed, null, null));
+
+        BitBoard board = new BitBoard(position);
+        long blackMoves = 0;
+        long whiteMoves = 0;
+        int passes = 0;
+        int i = 0;
+        while (!RandomGames.isOver(board)) {
+            int move = moves[i++];
+            if (move == BitBoard.PASS) {
+                assertEquals(0, board.getLegalMoves(), "a pass needs a position without moves");
+                board.pass();
+                passes++;
+                continue;
+            }
+            assertTrue((board.getLegalMoves() & (1L << move)) != 0, "move " + move + " should be legal");
+            if (board.getSideToMove() == BoardSpace.SpaceType.BLACK) {
+                blackMoves |= 1L << move;
+            } else {
+                whiteMoves |= 1L << move;
+            }
+            board.play(move);
+        }
+        assertEquals(Integer.MIN_VALUE, moves[i], "the rollout should stop at the end of the game");
+        assertEquals(board.countDiscs(BoardSpace.SpaceType.BLACK) - board.countDiscs(BoardSpace.SpaceType.WHITE),
+                difference);
+        assertEquals(blackMoves, played[0]);
+        assertEquals(whiteMoves, played[1]);
+        return passes;
+    }
+
+    @Test
+    public void testRollout() {
+        int passes = 0;
+        for (long seed = 1; seed <= 200; seed++) {
+            passes += replayRollout(BitBoard.start(), seed);
+        }
+        assertTrue(passes > 0, "some of the games should contain a pass");
+
+        // black has no move here, so every game starts with a pass
+        BitBoard pass = new BitBoard(0x1000491F0F077E7FL, 0xE0F0B0E0F0F88000L, BoardSpace.SpaceType.BLACK);
+        assertEquals(0, pass.getLegalMoves());
+        for (long seed = 1; seed <= 20; seed++) {
+            assertTrue(replayRollout(pass, seed) > 0);
+        }
+    }
+
+    @Test
+    public void testSmallTree() {
+        // once the tree is full the playouts go on from the nodes it has
+        MCTS small = new MCTS(50);
+        small.setEarlyStop(false);
+        BoardSpace move = small.makeMove(board, player);
+        assertNotNull(move);
+        assertEquals(1000, small.getRootVisits());
+    }
+
     @Test
     public void testMakeMoveWithFullBoard() {
         BoardSpace[][] fullBoard = new BoardSpace[8][8];
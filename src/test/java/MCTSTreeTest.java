@@ -0,0 +1,241 @@
+import othello.gamelogic.*;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MCTSTreeTest {
+
+    @Test
+    public void testExpand() {
+        MCTSTree tree = new MCTSTree(16);
+        BitBoard position = BitBoard.start();
+        int root = tree.addRoot(position);
+        assertEquals(position.getLegalMoves(), tree.getLegalMoves(root));
+
+        // every legal move gets one child, holding the position after that move
+        for (int i = 0; i < 4; i++) {
+            int child = tree.expand(root);
+            assertEquals(root, tree.getParent(child));
+            BitBoard after = new BitBoard(position);
+            after.play(tree.getMove(child));
+            assertTrue(tree.isPosition(child, after));
+        }
+        assertEquals(MCTSTree.NONE, tree.expand(root));
+        assertTrue(tree.isFullyExpanded(root));
+
+        int children = 0;
+        for (int child = tree.getFirstChild(root); child != MCTSTree.NONE; child = tree.getNextSibling(child)) {
+            children++;
+        }
+        assertEquals(4, children);
+    }
+
+    @Test
+    public void testUntriedMoves() {
+        MCTSTree tree = new MCTSTree(16);
+        int root = tree.addRoot(BitBoard.start());
+        long legal = tree.getLegalMoves(root);
+        assertEquals(legal, tree.getUntriedMoves(root));
+
+        // every expansion takes exactly the bit of its child's move
+        long expanded = 0;
+        for (int children = 1; children <= Long.bitCount(legal); children++) {
+            assertTrue(!tree.isFullyExpanded(root));
+            long before = tree.getUntriedMoves(root);
+            int child = tree.expand(root);
+            long taken = before & ~tree.getUntriedMoves(root);
+            assertEquals(1L << tree.getMove(child), taken);
+            assertEquals(0, tree.getUntriedMoves(root) & ~before);
+            expanded |= taken;
+            assertEquals(Long.bitCount(legal) - children, Long.bitCount(tree.getUntriedMoves(root)));
+        }
+        assertEquals(legal, expanded);
+        assertEquals(0, tree.getUntriedMoves(root));
+        assertTrue(tree.isFullyExpanded(root));
+    }
+
+    @Test
+    public void testFullTree() {
+        MCTSTree tree = new MCTSTree(2);
+        int root = tree.addRoot(BitBoard.start());
+        int child = tree.expand(root);
+        assertTrue(child != MCTSTree.NONE);
+
+        // a full tree refuses new nodes without losing the untried moves
+        assertEquals(MCTSTree.NONE, tree.expand(root));
+        assertEquals(MCTSTree.NONE, tree.expand(child));
+        assertTrue(!tree.isFullyExpanded(root));
+        assertEquals(tree.getLegalMoves(root) & ~(1L << tree.getMove(child)), tree.getUntriedMoves(root));
+        assertEquals(2, tree.size());
+    }
+
+    @Test
+    public void testRetain() {
+        MCTSTree tree = new MCTSTree(64);
+        int root = tree.addRoot(BitBoard.start());
+        int first = tree.expand(root);
+        int second = tree.expand(root);
+        int grandchild = tree.expand(second);
+        tree.expand(first);
+        int kept = tree.expand(grandchild);
+        tree.addVisits(grandchild, 3);
+        tree.addWins(grandchild, 1.5);
+        long black = tree.getBlack(grandchild);
+
+        int[] roots = {grandchild};
+        tree.retain(roots);
+
+        // only the grandchild and its child are left, moved to the front
+        assertEquals(2, tree.size());
+        assertEquals(0, roots[0]);
+        assertEquals(MCTSTree.NONE, tree.getParent(roots[0]));
+        assertEquals(3, tree.getVisits(roots[0]));
+        assertEquals(1.5, tree.getWins(roots[0]), 0);
+        assertEquals(black, tree.getBlack(roots[0]));
+        int child = tree.getFirstChild(roots[0]);
+        assertEquals(1, child);
+        assertEquals(roots[0], tree.getParent(child));
+        assertEquals(MCTSTree.NONE, tree.getNextSibling(child));
+        assertTrue(kept > child);
+    }
+
+    @Test
+    public void testAmaf() {
+        MCTSTree tree = new MCTSTree(16);
+        int root = tree.addRoot(BitBoard.start());
+        int child = tree.expand(root);
+        assertEquals(0, tree.getAmafVisits(child));
+
+        tree.addAmaf(child, 1);
+        tree.addAmaf(child, 0.5);
+        tree.addAmaf(child, 0);
+        assertEquals(3, tree.getAmafVisits(child));
+        assertEquals(1.5, tree.getAmafWins(child), 0);
+        // the node's own statistics are separate
+        assertEquals(0, tree.getVisits(child));
+
+        int[] roots = {child};
+        tree.retain(roots);
+        assertEquals(3, tree.getAmafVisits(roots[0]));
+        assertEquals(1.5, tree.getAmafWins(roots[0]), 0);
+    }
+
+    /**
+     * @return the child of node reached by square, NONE if there is none
+     */
+    private static int childFor(MCTSTree tree, int node, int square) {
+        for (int child = tree.getFirstChild(node); child != MCTSTree.NONE; child = tree.getNextSibling(child)) {
+            if (tree.getMove(child) == square) {
+                return child;
+            }
+        }
+        return MCTSTree.NONE;
+    }
+
+    @Test
+    public void testUpdateAmaf() {
+        MCTSTree tree = new MCTSTree(32);
+        int root = tree.addRoot(BitBoard.start());
+        while (tree.expand(root) != MCTSTree.NONE) {
+        }
+        // black's first move and white's replies to it
+        int first = childFor(tree, root, BitBoard.square(3, 2));
+        while (tree.expand(first) != MCTSTree.NONE) {
+        }
+        int reply = childFor(tree, first, BitBoard.square(2, 2));
+        int otherReply = childFor(tree, first, BitBoard.square(4, 2));
+        int lastReply = childFor(tree, first, BitBoard.square(2, 4));
+        int[] path = {root, first, reply};
+
+        // in the playout black also takes (4, 5), a first move it didn't make, and (2, 4), one of white's replies;
+        // white takes (4, 2), another reply, and (5, 4), another first move of black's
+        long blackMoves = (1L << BitBoard.square(4, 5)) | (1L << BitBoard.square(2, 4));
+        long whiteMoves = (1L << BitBoard.square(4, 2)) | (1L << BitBoard.square(5, 4));
+        tree.updateAmaf(path, path.length, 1, blackMoves, whiteMoves);
+        tree.updateAmaf(path, path.length, 0.5, blackMoves, whiteMoves);
+
+        // at the root only black's moves count: the move made on the path and the one made in the playout
+        assertEquals(2, tree.getAmafVisits(first));
+        assertEquals(1.5, tree.getAmafWins(first), 0);
+        assertEquals(2, tree.getAmafVisits(childFor(tree, root, BitBoard.square(4, 5))));
+        assertEquals(0, tree.getAmafVisits(childFor(tree, root, BitBoard.square(5, 4))));
+        assertEquals(0, tree.getAmafVisits(childFor(tree, root, BitBoard.square(2, 3))));
+
+        // below the first move only white's moves count
+        assertEquals(2, tree.getAmafVisits(reply));
+        assertEquals(1.5, tree.getAmafWins(reply), 0);
+        assertEquals(2, tree.getAmafVisits(otherReply));
+        assertEquals(0, tree.getAmafVisits(lastReply));
+        // the node statistics are left alone
+        assertEquals(0, tree.getVisits(first));
+    }
+
+    @Test
+    public void testTranspositions() {
+        MCTSTree tree = new MCTSTree(256);
+        tree.setTranspositions(true);
+        int root = tree.addRoot(BitBoard.start());
+        java.util.List<Integer> level = java.util.List.of(root);
+        int alias = MCTSTree.NONE;
+        for (int ply = 0; ply < 3; ply++) {
+            java.util.List<Integer> next = new java.util.ArrayList<>();
+            for (int node : level) {
+                int child;
+                while ((child = tree.expand(node)) != MCTSTree.NONE) {
+                    int shared = tree.resolve(child);
+                    if (shared == child) {
+                        next.add(child);
+                    } else if (tree.getParent(tree.getParent(shared)) != tree.getParent(node)) {
+                        // a transposition of moves made after different first moves
+                        alias = child;
+                    }
+                }
+            }
+            level = next;
+        }
+
+        // the opening already has positions reached by two move orders at the third ply
+        assertTrue(alias != MCTSTree.NONE);
+        int shared = tree.resolve(alias);
+        BitBoard position = new BitBoard(tree.getBlack(alias), tree.getWhite(alias), tree.getSideToMove(alias));
+        assertTrue(tree.isPosition(shared, position));
+        assertTrue(tree.getParent(shared) != tree.getParent(alias));
+        assertTrue(tree.isFullyExpanded(alias));
+
+        // keeping only the subtree of the alias, its node is dropped and the alias takes its place
+        int first = tree.getParent(tree.getParent(alias));
+        int[] roots = {first};
+        tree.retain(roots);
+        int kept = MCTSTree.NONE;
+        for (int child = tree.getFirstChild(roots[0]); child != MCTSTree.NONE; child = tree.getNextSibling(child)) {
+            for (int grandchild = tree.getFirstChild(child); grandchild != MCTSTree.NONE;
+                 grandchild = tree.getNextSibling(grandchild)) {
+                if (tree.isPosition(grandchild, position)) {
+                    kept = grandchild;
+                }
+            }
+        }
+        assertTrue(kept != MCTSTree.NONE);
+        assertEquals(kept, tree.resolve(kept));
+        assertTrue(!tree.isFullyExpanded(kept));
+    }
+
+    @Test
+    public void testTranspositionGroups() {
+        MCTSTree tree = new MCTSTree(16);
+        tree.setTranspositions(true);
+        int first = tree.addRoot(BitBoard.start(), 0);
+        int second = tree.addRoot(BitBoard.start(), 1);
+        int same = tree.addRoot(BitBoard.start(), 0);
+
+        // the same move below roots of different groups gives separate nodes, within a group an alias
+        int child = tree.expand(first);
+        int other = tree.expand(second);
+        int alias = tree.expand(same);
+        assertEquals(tree.getMove(child), tree.getMove(other));
+        assertEquals(other, tree.resolve(other));
+        assertEquals(child, tree.resolve(alias));
+    }
+}
@@ -3,6 +3,7 @@ package test;
 import org.junit.Test;
 import org.junit.Assert;
 import othello.Constants;
+import othello.gamelogic.BitBoard;
 import othello.gamelogic.BoardSpace;
 import othello.gamelogic.HumanPlayer;
 import othello.gamelogic.Player;
@@ -64,6 +65,158 @@ public class MinimaxTest {
         Assert.assertTrue("Minimax should select either [2][2] or [4][2] as the best move", isExpectedMove);
     }
 
+    @Test
+    public void testPrincipalVariation() {
+        BoardSpace[][] testBoard = createTestBoard();
+
+        Player whitePlayer = new HumanPlayer();
+        whitePlayer.setColor(BoardSpace.SpaceType.WHITE);
+
+        int depth = 5;
+        Minimax minimax = new Minimax();
+        minimax.setMaxDepth(depth);
+        BoardSpace selectedMove = minimax.makeMove(testBoard, whitePlayer);
+        int[] pv = minimax.getPrincipalVariation();
+
+        // The principal variation starts with the selected move and is at most as long as the search
+        Assert.assertTrue("Principal variation should not be empty", pv.length > 0);
+        Assert.assertTrue("Principal variation is longer than the search depth", pv.length <= depth);
+        Assert.assertEquals(BitBoard.square(selectedMove.getX(), selectedMove.getY()), pv[0]);
+
+        // Every move of the line can be played in turn, and a pass only when there is no move
+        BitBoard position = BitBoard.fromBoard(testBoard, BoardSpace.SpaceType.WHITE);
+        for (int move : pv) {
+            if (move == BitBoard.PASS) {
+                Assert.assertEquals(0L, position.getLegalMoves());
+                position.pass();
+            } else {
+                Assert.assertTrue("Illegal move " + move + " in the principal variation",
+                        (position.getLegalMoves() & (1L << move)) != 0);
+                position.play(move);
+            }
+        }
+    }
+
+    @Test
+    public void testTimeLimit() {
+        BoardSpace[][] testBoard = createTestBoard();
+
+        Player whitePlayer = new HumanPlayer();
+        whitePlayer.setColor(BoardSpace.SpaceType.WHITE);
+
+        Minimax minimax = new Minimax();
+        minimax.setMaxDepth(60);
+        minimax.setTimeLimitMillis(200);
+
+        long start = System.currentTimeMillis();
+        BoardSpace selectedMove = minimax.makeMove(testBoard, whitePlayer);
+        long elapsed = System.currentTimeMillis() - start;
+
+        // The search stops close to its budget and still returns a legal move
+        Assert.assertTrue("Search should respect its time budget, took " + elapsed + "ms", elapsed < 1000);
+        Assert.assertTrue("Search should complete at least one iteration", minimax.getCompletedDepth() >= 1);
+        Assert.assertTrue(whitePlayer.getAvailableMoves(testBoard).containsKey(selectedMove));
+    }
+
+    @Test
+    public void testNodeLimit() {
+        BoardSpace[][] testBoard = createTestBoard();
+
+        Player whitePlayer = new HumanPlayer();
+        whitePlayer.setColor(BoardSpace.SpaceType.WHITE);
+
+        Minimax minimax = new Minimax();
+        minimax.setMaxDepth(60);
+        minimax.setNodeLimit(5000);
+
+        BoardSpace selectedMove = minimax.makeMove(testBoard, whitePlayer);
+
+        Assert.assertTrue(minimax.getNodeCount() <= 5000);
+        Assert.assertTrue(minimax.getCompletedDepth() < 60);
+        Assert.assertTrue(whitePlayer.getAvailableMoves(testBoard).containsKey(selectedMove));
+    }
+
+    @Test
+    public void testPvsMatchesAlphaBeta() {
+        BoardSpace[][] testBoard = createTestBoard();
+
+        Player whitePlayer = new HumanPlayer();
+        whitePlayer.setColor(BoardSpace.SpaceType.WHITE);
+
+        Minimax alphaBeta = new Minimax();
+        alphaBeta.setTimeLimitMillis(60000);
+        alphaBeta.makeMove(testBoard, whitePlayer);
+
+        Minimax pvs = new Minimax();
+        pvs.setTimeLimitMillis(60000);
+        pvs.setAlgorithm(Minimax.Algorithm.PVS);
+        pvs.makeMove(testBoard, whitePlayer);
+
+        // Both algorithms search the same tree, only the amount of it they prune differs
+        Assert.assertEquals(alphaBeta.getScore(), pvs.getScore());
+    }
+
+    @Test
+    public void testParallelMatchesSerial() {
+        BoardSpace[][] testBoard = createTestBoard();
+
+        Player whitePlayer = new HumanPlayer();
+        whitePlayer.setColor(BoardSpace.SpaceType.WHITE);
+
+        Minimax serial = new Minimax();
+        serial.setTimeLimitMillis(60000);
+        serial.makeMove(testBoard, whitePlayer);
+
+        Minimax parallel = new Minimax();
+        parallel.setTimeLimitMillis(60000);
+        parallel.setThreads(4);
+        BoardSpace selectedMove = parallel.makeMove(testBoard, whitePlayer);
+        parallel.shutdown();
+
+        // Splitting the root moves between threads must not change the score found
+        Assert.assertEquals(serial.getScore(), parallel.getScore());
+        Assert.assertTrue(whitePlayer.getAvailableMoves(testBoard).containsKey(selectedMove));
+    }
+
+    @Test
+    public void testLazySmp() {
+        BoardSpace[][] testBoard = createTestBoard();
+
+        Player whitePlayer = new HumanPlayer();
+        whitePlayer.setColor(BoardSpace.SpaceType.WHITE);
+
+        Minimax minimax = new Minimax();
+        minimax.setTimeLimitMillis(60000);
+        minimax.setThreads(3);
+        minimax.setParallelism(Minimax.Parallelism.LAZY_SMP);
+
+        // The helpers are stopped and joined before each call returns, so the same instance can be reused
+        for (int i = 0; i < 3; i++) {
+            BoardSpace selectedMove = minimax.makeMove(testBoard, whitePlayer);
+            Assert.assertEquals(5, minimax.getCompletedDepth());
+            Assert.assertTrue(whitePlayer.getAvailableMoves(testBoard).containsKey(selectedMove));
+        }
+        minimax.shutdown();
+    }
+
+    @Test
+    public void testIncrementalEvaluation() {
+        java.util.Random random = new java.util.Random(17);
+        for (BoardSpace.SpaceType color : new BoardSpace.SpaceType[]{BoardSpace.SpaceType.BLACK, BoardSpace.SpaceType.WHITE}) {
+            Player player = new HumanPlayer();
+            player.setColor(color);
+            Minimax minimax = new Minimax();
+            minimax.setMaxDepth(1);
+            minimax.makeMove(BitBoard.start().toBoard(), player);
+
+            // random games to the end, passes included, checked after every make and every unmake
+            for (int game = 0; game < 20; game++) {
+                int[] moves = RandomGames.play(BitBoard.start(), random);
+                Assert.assertEquals(0, minimax.testIncrementalEvaluation(BitBoard.start(), moves));
+            }
+        }
+    }
+
     /**
      * Creates a test board with the specified piece positions
      */
@@ -0,0 +1,47 @@
+import othello.gamelogic.*;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class MoveOrderingTest {
+
+    @Test
+    public void testHashMoveThenKillers() {
+        BitBoard position = BitBoard.start();
+        long legal = position.getLegalMoves();
+        MoveOrdering ordering = new MoveOrdering(4);
+        int[] squares = new int[4];
+        for (int i = 0; i < 4; i++) {
+            squares[i] = Long.numberOfTrailingZeros(legal);
+            legal &= legal - 1;
+        }
+
+        ordering.recordCutoff(position, 1, squares[1], 2, 3);
+        ordering.recordCutoff(position, 1, squares[2], 2, 0);
+        int count = ordering.order(position, position.getLegalMoves(), squares[3], 1, 4);
+        int[] moves = ordering.getMoves(1);
+
+        assertEquals(4, count);
+        assertEquals(squares[3], moves[0]);
+        // the newest killer comes first
+        assertEquals(squares[2], moves[1]);
+        assertEquals(squares[1], moves[2]);
+        assertEquals(squares[0], moves[3]);
+    }
+
+    @Test
+    public void testCutoffStatistics() {
+        BitBoard position = BitBoard.start();
+        MoveOrdering ordering = new MoveOrdering(4);
+        assertEquals(0, ordering.getFirstMoveCutoffRate(), 0);
+
+        ordering.recordCutoff(position, 0, 19, 1, 0);
+        ordering.recordCutoff(position, 0, 26, 1, 2);
+        assertEquals(2, ordering.getCutoffCount());
+        assertEquals(0.5, ordering.getFirstMoveCutoffRate(), 1e-9);
+
+        ordering.newSearch();
+        assertEquals(0, ordering.getCutoffCount());
+    }
+}
@@ -6,8 +6,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class OthelloGameTest {
 
@@ -275,4 +277,30 @@ public class OthelloGameTest {
         }
         assertTrue(expectedP2Spaces.isEmpty());
     }
+
+    @Test
+    public void testOGTakeIllegal() {
+        Player p1 = new HumanPlayer();
+        Player p2 = new HumanPlayer();
+        p1.setColor(BoardSpace.SpaceType.BLACK);
+        p2.setColor(BoardSpace.SpaceType.WHITE);
+
+        OthelloGame og = new OthelloGame(p1, p2);
+        BoardSpace[][] board = og.getBoard();
+
+        // an empty corner flips nothing and the center is already taken
+        BoardSpace[] illegal = {board[0][0], board[3][3], board[3][4]};
+        for (BoardSpace destination : illegal) {
+            BoardSpace.SpaceType before = destination.getType();
+            try {
+                og.takeSpaces(p1, p2, destination);
+                fail("(" + destination.getX() + ", " + destination.getY() + ") should be rejected");
+            } catch (IllegalArgumentException expected) {
+                // the board is left as it was
+            }
+            assertSame(before, destination.getType());
+        }
+        assertEquals(2, p1.getPlayerOwnedSpacesSpaces().size());
+        assertEquals(2, p2.getPlayerOwnedSpacesSpaces().size());
+    }
 }
@@ -0,0 +1,103 @@
+import othello.gamelogic.*;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class PatternEvaluatorTest {
+
+    private static short[][] randomWeights(long seed) {
+        Random random = new Random(seed);
+        short[][] weights = new short[PatternEvaluator.NUM_PHASES][PatternEvaluator.getPhaseSize()];
+        for (short[] phase : weights) {
+            for (int i = 0; i < phase.length; i++) {
+                phase[i] = (short) (random.nextInt(201) - 100);
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Applies one of the 8 symmetries of the board to every disc of a mask
+     */
+    private static long transform(long mask, int symmetry) {
+        long result = 0;
+        for (; mask != 0; mask &= mask - 1) {
+            int square = Long.numberOfTrailingZeros(mask);
+            int x = BitBoard.getX(square);
+            int y = BitBoard.getY(square);
+            if ((symmetry & 1) != 0) {
+                x = BitBoard.BOARD_SIZE - 1 - x;
+            }
+            if ((symmetry & 2) != 0) {
+                y = BitBoard.BOARD_SIZE - 1 - y;
+            }
+            if ((symmetry & 4) != 0) {
+                int swap = x;
+                x = y;
+                y = swap;
+            }
+            result |= 1L << BitBoard.square(x, y);
+        }
+        return result;
+    }
+
+    private static void assertSymmetric(PatternEvaluator evaluator, long seed) {
+        Random random = new Random(seed);
+        for (int n = 0; n < 200; n++) {
+            long player = random.nextLong() & random.nextLong();
+            long opponent = random.nextLong() & ~player;
+            int score = evaluator.evaluate(player, opponent);
+            for (int symmetry = 1; symmetry < 8; symmetry++) {
+                assertEquals(score, evaluator.evaluate(transform(player, symmetry), transform(opponent, symmetry)));
+            }
+        }
+    }
+
+    @Test
+    public void testSameScoreUnderAllSymmetries() {
+        // holds for any weights, since symmetric readings of a pattern share one weight
+        assertSymmetric(new PatternEvaluator(randomWeights(7)), 11);
+        assertSymmetric(new PatternEvaluator(), 13);
+    }
+
+    @Test
+    public void testPhaseFollowsEmptySquares() {
+        short[][] weights = new short[PatternEvaluator.NUM_PHASES][PatternEvaluator.getPhaseSize()];
+        for (int phase = 0; phase < weights.length; phase++) {
+            java.util.Arrays.fill(weights[phase], (short) phase);
+        }
+        PatternEvaluator evaluator = new PatternEvaluator(weights);
+        int count = PatternEvaluator.getFeatureCount();
+
+        // the opening has 60 empty squares and a full board none
+        BitBoard start = BitBoard.start();
+        assertEquals((PatternEvaluator.NUM_PHASES - 1) * count, evaluator.evaluate(start.getBlack(), start.getWhite()));
+        assertEquals(0, evaluator.evaluate(0xFFFFFFFFL, 0xFFFFFFFF00000000L));
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        short[][] weights = randomWeights(3);
+        File file = File.createTempFile("patterns", ".bin");
+        try {
+            PatternEvaluator.write(weights, file);
+            short[][] read = PatternEvaluator.read(file);
+            for (int phase = 0; phase < weights.length; phase++) {
+                assertArrayEquals(weights[phase], read[phase]);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsWrongSize() {
+        new PatternEvaluator(new short[PatternEvaluator.NUM_PHASES][10]);
+    }
+}
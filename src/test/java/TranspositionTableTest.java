@@ -0,0 +1,54 @@
+import othello.gamelogic.*;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class TranspositionTableTest {
+
+    @Test
+    public void testStoreAndProbe() {
+        TranspositionTable table = new TranspositionTable(1 << 10);
+        long key = 0x123456789ABCDEFL;
+        assertEquals(0L, table.probe(key));
+
+        table.store(key, 4, TranspositionTable.LOWER_BOUND, -350, 27);
+        long entry = table.probe(key);
+
+        assertEquals(4, TranspositionTable.depthOf(entry));
+        assertEquals(TranspositionTable.LOWER_BOUND, TranspositionTable.boundOf(entry));
+        assertEquals(-350, TranspositionTable.scoreOf(entry));
+        assertEquals(27, TranspositionTable.moveOf(entry));
+    }
+
+    @Test
+    public void testDepthPreferredReplacement() {
+        // a single bucket, so every key collides
+        TranspositionTable table = new TranspositionTable(32);
+        assertEquals(2, table.capacity());
+
+        table.store(1, 6, TranspositionTable.EXACT, 10, 0);
+        table.store(2, 2, TranspositionTable.EXACT, 20, 1);
+        table.store(3, 3, TranspositionTable.EXACT, 30, 2);
+
+        // the deep entry survives in the depth-preferred slot, the always-replace slot holds the newest
+        assertEquals(10, TranspositionTable.scoreOf(table.probe(1)));
+        assertEquals(0L, table.probe(2));
+        assertEquals(30, TranspositionTable.scoreOf(table.probe(3)));
+
+        // entries of an older search can be replaced by shallower ones
+        table.newSearch();
+        table.store(4, 1, TranspositionTable.EXACT, 40, 3);
+        assertEquals(0L, table.probe(1));
+        assertEquals(40, TranspositionTable.scoreOf(table.probe(4)));
+    }
+
+    @Test
+    public void testKeepsMoveWhenNoneFound() {
+        TranspositionTable table = new TranspositionTable(1 << 10);
+        table.store(99, 3, TranspositionTable.EXACT, 5, 12);
+        table.store(99, 4, TranspositionTable.UPPER_BOUND, 1, BitBoard.PASS);
+        assertEquals(12, TranspositionTable.moveOf(table.probe(99)));
+        assertEquals(4, TranspositionTable.depthOf(table.probe(99)));
+    }
+}
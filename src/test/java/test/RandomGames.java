@@ -0,0 +1,54 @@
+package test;
+
+import othello.gamelogic.BitBoard;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Plays random games on BitBoards for the tests that need many positions from real games
+ */
+public final class RandomGames {
+
+    private RandomGames() {
+    }
+
+    /**
+     * Plays random legal moves until the game ends, passing when the side to move has no move
+     * @param board the position to start from, left at the end of the game
+     * @return the moves played as bit indices, BitBoard.PASS for a pass
+     */
+    public static int[] play(BitBoard board, Random random) {
+        return play(board, random, 0);
+    }
+
+    /**
+     * Plays random legal moves until the game ends or no more than the given number of squares is empty,
+     * passing when the side to move has no move
+     * @param board the position to start from, left where the moves stop
+     * @return the moves played as bit indices, BitBoard.PASS for a pass
+     */
+    public static int[] play(BitBoard board, Random random, int empties) {
+        int[] moves = new int[2 * BitBoard.NUM_SQUARES];
+        int count = 0;
+        while (board.countEmpty() > empties && !isOver(board)) {
+            long legal = board.getLegalMoves();
+            if (legal == 0) {
+                board.pass();
+                moves[count++] = BitBoard.PASS;
+                continue;
+            }
+            int square = BitBoard.nthSquare(legal, random.nextInt(Long.bitCount(legal)));
+            board.play(square);
+            moves[count++] = square;
+        }
+        return Arrays.copyOf(moves, count);
+    }
+
+    /**
+     * @return whether neither side has a legal move
+     */
+    public static boolean isOver(BitBoard board) {
+        return board.getLegalMoves() == 0 && BitBoard.legalMoves(board.getOpponent(), board.getPlayer()) == 0;
+    }
+}